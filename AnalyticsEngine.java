@@ -0,0 +1,254 @@
+package in.java.main;
+
+import java.util.Arrays;
+import java.util.TimeZone;
+
+/**
+ * Incremental analytics over the booking stream: revenue per hour, day
+ * and week, booking counts per hour of day, and the most popular routes.
+ * Fed by its own {@link EventBus} consumer.
+ * <p>
+ * Every booking updates a handful of fixed-size arrays, and every query
+ * reads a handful of slots, so both are O(1) however long the history is.
+ * Revenue is rolled up into rings of hourly, daily and weekly buckets
+ * (local time, weeks starting Monday); a bucket is recycled when its slot
+ * comes round again. Routes are counted with the Space-Saving heavy-hitters
+ * sketch: {@link #ROUTE_COUNTERS} counters are enough for the top few
+ * routes to come out with counts overestimated by at most the smallest
+ * counter, which {@link Route#error} reports.
+ * <p>
+ * Bookings without a timestamp still count towards routes but not the
+ * time-based views. Cancelled bookings earn nothing: their fare comes back
+ * out of the revenue buckets.
+ */
+class AnalyticsEngine implements EventBus.Handler {
+
+    static final int ROUTE_COUNTERS = 64;
+
+    private static final long HOUR_MS = 3_600_000L;
+    private static final int HOURS_KEPT = 48;
+    private static final int DAYS_KEPT = 14;
+    private static final int WEEKS_KEPT = 8;
+
+    /** One heavy-hitter route and its estimated count. */
+    static final class Route {
+        final String from, to;
+        final long count;
+        final long error;
+
+        Route(String from, String to, long count, long error) {
+            this.from = from;
+            this.to = to;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    private final TimeZone zone = TimeZone.getDefault();
+
+    // Rings: slot -> bucket index it currently holds, and that bucket's revenue in paise
+    private final long[] hourIndex = new long[HOURS_KEPT];
+    private final long[] hourPaise = new long[HOURS_KEPT];
+    private final long[] dayIndex = new long[DAYS_KEPT];
+    private final long[] dayPaise = new long[DAYS_KEPT];
+    private final long[] weekIndex = new long[WEEKS_KEPT];
+    private final long[] weekPaise = new long[WEEKS_KEPT];
+    private final long[] bookingsByHourOfDay = new long[24];
+    private long timedBookings;
+
+    // Space-Saving counters
+    private final String[] routeFrom = new String[ROUTE_COUNTERS];
+    private final String[] routeTo = new String[ROUTE_COUNTERS];
+    private final long[] routeCount = new long[ROUTE_COUNTERS];
+    private final long[] routeError = new long[ROUTE_COUNTERS];
+    private long routedBookings;
+
+    AnalyticsEngine() {
+        Arrays.fill(hourIndex, Long.MIN_VALUE);
+        Arrays.fill(dayIndex, Long.MIN_VALUE);
+        Arrays.fill(weekIndex, Long.MIN_VALUE);
+    }
+
+    @Override
+    public void onEvent(EventBus.Event event, boolean endOfBatch) {
+        Booking booking = event.booking;
+        if (event.type == EventBus.Type.BOOKING_CREATED) {
+            long paise = event.status == BookingStatus.CANCELLED ? 0 : Math.round(booking.fare * 100);
+            record(booking.createdAt, paise, booking.from, booking.to);
+        } else if (event.type == EventBus.Type.STATUS_CHANGED && event.status == BookingStatus.CANCELLED) {
+            refund(booking.createdAt, Math.round(booking.fare * 100));
+        }
+    }
+
+    /** Feeds archived history in, which the store doesn't replay through listeners. */
+    void loadArchive(BookingArchive archive) {
+        int rows = archive.size();
+        for (int row = 0; row < rows; row++) {
+            long paise = archive.status(row) == BookingStatus.CANCELLED ? 0 : archive.farePaise(row);
+            record(archive.createdAt(row), paise, archive.from(row), archive.to(row));
+        }
+    }
+
+    synchronized void record(long createdAt, long farePaise, String from, String to) {
+        countRoute(from, to);
+        if (createdAt == 0) {
+            return;
+        }
+        long hour = localHour(createdAt);
+        long day = Math.floorDiv(hour, 24);
+        add(hourIndex, hourPaise, hour, farePaise);
+        add(dayIndex, dayPaise, day, farePaise);
+        add(weekIndex, weekPaise, week(day), farePaise);
+        bookingsByHourOfDay[(int) Math.floorMod(hour, 24L)]++;
+        timedBookings++;
+    }
+
+    // Takes revenue back out of the buckets the booking was counted into
+    private synchronized void refund(long createdAt, long farePaise) {
+        if (createdAt == 0) {
+            return;
+        }
+        long hour = localHour(createdAt);
+        long day = Math.floorDiv(hour, 24);
+        subtract(hourIndex, hourPaise, hour, farePaise);
+        subtract(dayIndex, dayPaise, day, farePaise);
+        subtract(weekIndex, weekPaise, week(day), farePaise);
+    }
+
+    // -------------------- QUERIES --------------------
+    /** Revenue (rupees) of the hour, day or week {@code ago} periods before now. */
+    synchronized double revenueHoursAgo(int ago) {
+        return get(hourIndex, hourPaise, localHour(System.currentTimeMillis()) - ago) / 100.0;
+    }
+
+    synchronized double revenueDaysAgo(int ago) {
+        return get(dayIndex, dayPaise, Math.floorDiv(localHour(System.currentTimeMillis()), 24) - ago) / 100.0;
+    }
+
+    synchronized double revenueWeeksAgo(int ago) {
+        long today = Math.floorDiv(localHour(System.currentTimeMillis()), 24);
+        return get(weekIndex, weekPaise, week(today) - ago) / 100.0;
+    }
+
+    /** Percentage change from {@code previous} to {@code current}, or NaN without a baseline. */
+    static double growthPercent(double current, double previous) {
+        return previous == 0 ? Double.NaN : (current - previous) * 100.0 / previous;
+    }
+
+    /** Bookings made in each hour of the day (local time), all time. */
+    synchronized long[] bookingsByHourOfDay() {
+        return bookingsByHourOfDay.clone();
+    }
+
+    synchronized long timedBookings() {
+        return timedBookings;
+    }
+
+    /** Hours of the day with the most bookings, busiest first; fewer if fewer hours saw any. */
+    synchronized int[] peakHours(int k) {
+        int[] peaks = new int[k];
+        int found = 0;
+        boolean[] taken = new boolean[24];
+        for (; found < k; found++) {
+            int best = -1;
+            for (int h = 0; h < 24; h++) {
+                if (!taken[h] && bookingsByHourOfDay[h] > 0
+                        && (best < 0 || bookingsByHourOfDay[h] > bookingsByHourOfDay[best])) {
+                    best = h;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            taken[best] = true;
+            peaks[found] = best;
+        }
+        return Arrays.copyOf(peaks, found);
+    }
+
+    /** Most frequent routes, most frequent first. */
+    synchronized Route[] topRoutes(int k) {
+        Route[] top = new Route[Math.min(k, ROUTE_COUNTERS)];
+        int found = 0;
+        boolean[] taken = new boolean[ROUTE_COUNTERS];
+        for (; found < top.length; found++) {
+            int best = -1;
+            for (int i = 0; i < ROUTE_COUNTERS; i++) {
+                if (!taken[i] && routeCount[i] > 0 && (best < 0 || routeCount[i] > routeCount[best])) {
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            taken[best] = true;
+            top[found] = new Route(routeFrom[best], routeTo[best], routeCount[best], routeError[best]);
+        }
+        return Arrays.copyOf(top, found);
+    }
+
+    synchronized long routedBookings() {
+        return routedBookings;
+    }
+
+    // -------------------- INTERNALS --------------------
+    private long localHour(long epochMillis) {
+        return Math.floorDiv(epochMillis + zone.getOffset(epochMillis), HOUR_MS);
+    }
+
+    // Day 0 (1970-01-01) was a Thursday; shift so weeks start on Monday
+    private static long week(long day) {
+        return Math.floorDiv(day + 3, 7);
+    }
+
+    private static void add(long[] index, long[] sums, long bucket, long amount) {
+        int slot = (int) Math.floorMod(bucket, (long) index.length);
+        if (index[slot] != bucket) {
+            if (index[slot] > bucket) {
+                return; // older than anything the ring still keeps
+            }
+            index[slot] = bucket;
+            sums[slot] = 0;
+        }
+        sums[slot] += amount;
+    }
+
+    // Only touches a bucket the ring still holds; older ones are gone anyway
+    private static void subtract(long[] index, long[] sums, long bucket, long amount) {
+        int slot = (int) Math.floorMod(bucket, (long) index.length);
+        if (index[slot] == bucket) {
+            sums[slot] -= amount;
+        }
+    }
+
+    private static long get(long[] index, long[] sums, long bucket) {
+        int slot = (int) Math.floorMod(bucket, (long) index.length);
+        return index[slot] == bucket ? sums[slot] : 0;
+    }
+
+    private void countRoute(String from, String to) {
+        if (from == null || to == null) {
+            return;
+        }
+        routedBookings++;
+        int min = 0;
+        for (int i = 0; i < ROUTE_COUNTERS; i++) {
+            if (routeCount[i] == 0) {
+                min = i;
+                break;
+            }
+            if (from.equals(routeFrom[i]) && to.equals(routeTo[i])) {
+                routeCount[i]++;
+                return;
+            }
+            if (routeCount[i] < routeCount[min]) {
+                min = i;
+            }
+        }
+        // Unmonitored route takes over the smallest counter, inheriting its count as error
+        routeError[min] = routeCount[min];
+        routeCount[min]++;
+        routeFrom[min] = from;
+        routeTo[min] = to;
+    }
+}
@@ -0,0 +1,73 @@
+package in.java.main;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Chunked, append-only list. Appends are serialized on the list's monitor
+ * and never move existing elements; reads are lock-free and see every
+ * element below the published size. Iteration covers the prefix that
+ * existed when the iterator was created, so it is a stable snapshot even
+ * while other threads keep appending.
+ */
+final class AppendOnlyList<T> implements Iterable<T> {
+
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private volatile Object[][] chunks = new Object[8][];
+    private volatile int size;
+
+    /** Appends an element and returns its index. */
+    synchronized int add(T value) {
+        int index = size;
+        int chunk = index >>> CHUNK_BITS;
+        Object[][] current = chunks;
+        if (chunk == current.length) {
+            Object[][] grown = new Object[current.length * 2][];
+            System.arraycopy(current, 0, grown, 0, current.length);
+            current = grown;
+        }
+        if (current[chunk] == null) {
+            current[chunk] = new Object[CHUNK_SIZE];
+        }
+        current[chunk][index & CHUNK_MASK] = value;
+        chunks = current;
+        size = index + 1;
+        return index;
+    }
+
+    @SuppressWarnings("unchecked")
+    T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return (T) chunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+    }
+
+    int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        int limit = size;
+        return new Iterator<T>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < limit;
+            }
+
+            @Override
+            public T next() {
+                if (next >= limit) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+        };
+    }
+}
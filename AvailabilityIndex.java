@@ -0,0 +1,97 @@
+package in.java.main;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Keeps a per-cab counter of active (not completed) bookings together with
+ * the live set of cabs that currently have none. Booking creation and
+ * completion update it incrementally, so availability is an O(1) read
+ * instead of a scan over the whole booking history.
+ */
+class AvailabilityIndex {
+
+    // cab id -> number of active bookings for that cab
+    private final Map<String, Integer> activeCounts = new ConcurrentHashMap<>();
+    private final Set<String> freeCabs = ConcurrentHashMap.newKeySet();
+    private final List<Consumer<String>> changeListeners = new CopyOnWriteArrayList<>();
+
+    /** Called with the cab id whenever a cab flips between free and on trip. */
+    void addChangeListener(Consumer<String> listener) {
+        changeListeners.add(listener);
+    }
+
+    /** Starts tracking a cab. A newly registered cab is free. */
+    void registerCab(String cabId) {
+        activeCounts.computeIfAbsent(cabId, id -> {
+            freeCabs.add(id);
+            return 0;
+        });
+    }
+
+    /** Records a new active booking; the cab leaves the free set on its first one. */
+    void bookingOpened(String cabId) {
+        boolean[] changed = new boolean[1];
+        activeCounts.computeIfPresent(cabId, (id, count) -> {
+            if (count == 0) {
+                changed[0] = freeCabs.remove(id);
+            }
+            return count + 1;
+        });
+        if (changed[0]) {
+            fireChanged(cabId);
+        }
+    }
+
+    /**
+     * Atomically takes a free cab: succeeds only if the cab is known and has
+     * no active booking, in which case it now has exactly one.
+     */
+    boolean tryReserve(String cabId) {
+        boolean[] reserved = new boolean[1];
+        activeCounts.computeIfPresent(cabId, (id, count) -> {
+            if (count == 0) {
+                freeCabs.remove(id);
+                reserved[0] = true;
+                return 1;
+            }
+            return count;
+        });
+        if (reserved[0]) {
+            fireChanged(cabId);
+        }
+        return reserved[0];
+    }
+
+    /** Records that an active booking finished; the cab is free again on its last one. */
+    void bookingClosed(String cabId) {
+        boolean[] changed = new boolean[1];
+        activeCounts.computeIfPresent(cabId, (id, count) -> {
+            if (count == 1) {
+                changed[0] = freeCabs.add(id);
+            }
+            return Math.max(count - 1, 0);
+        });
+        if (changed[0]) {
+            fireChanged(cabId);
+        }
+    }
+
+    private void fireChanged(String cabId) {
+        for (Consumer<String> listener : changeListeners) {
+            listener.accept(cabId);
+        }
+    }
+
+    boolean isAvailable(String cabId) {
+        return freeCabs.contains(cabId);
+    }
+
+    int availableCount() {
+        return freeCabs.size();
+    }
+}
@@ -0,0 +1,374 @@
+package in.java.main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro-batching dispatcher for bursts of ride requests.
+ * <p>
+ * Requests queue up for a short window, then the whole batch is matched
+ * against free cabs at once: each request contributes its nearest few free
+ * cabs as candidates, and the Hungarian algorithm picks the assignment with
+ * the least total pickup distance over those candidates. The result is
+ * committed with {@link BookingStore#bookAllIfFree}, so a batch lands in
+ * the store in one piece; if a cab was taken by a manual booking meanwhile,
+ * the batch is simply re-matched.
+ * <p>
+ * Requests that lose out to a closer one are carried into the next batch a
+ * few times before giving up. Throughput and p99 submit-to-booked latency
+ * over recent assignments are available for the dashboard.
+ */
+class BatchDispatcher {
+
+    private static final int MAX_BATCH = 128;
+    private static final int CANDIDATES = 8;
+    private static final int MAX_ROUNDS = 3;
+    private static final int MAX_CARRY_OVERS = 3;
+    private static final int QUEUE_CAPACITY = 16 * 1024;
+    private static final double NO_EDGE = 1e9;
+
+    private static final int SAMPLES = 4096;
+    private static final long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private static final class Request {
+        final String bookingId, customer, from, to, type;
+        final double lat, lon;
+        final long submittedNanos = System.nanoTime();
+        final CompletableFuture<DispatchEngine.Assignment> result = new CompletableFuture<>();
+        int carryOvers;
+
+        Request(String bookingId, String customer, String from, String to, String type, double[] pickup) {
+            this.bookingId = bookingId;
+            this.customer = customer;
+            this.from = from;
+            this.to = to;
+            this.type = type;
+            this.lat = pickup[0];
+            this.lon = pickup[1];
+        }
+    }
+
+    private final BookingStore store;
+    private final DispatchEngine engine;
+    private final long windowNanos;
+    private final BlockingQueue<Request> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final List<Request> carried = new ArrayList<>();
+
+    private Thread worker;
+    private volatile boolean running;
+    private volatile SurgeTracker surge;
+
+    // Recent assignments, written by the worker and read by the dashboard
+    private final long[] completedAt = new long[SAMPLES];
+    private final long[] latencies = new long[SAMPLES];
+    private long assignments;
+
+    BatchDispatcher(BookingStore store, DispatchEngine engine, long windowMillis) {
+        this.store = store;
+        this.engine = engine;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    }
+
+    /** Counts every submitted request as demand at its pickup. */
+    void setSurgeTracker(SurgeTracker surge) {
+        this.surge = surge;
+    }
+
+    void start() {
+        running = true;
+        worker = new Thread(this::dispatchLoop, "batch-dispatcher");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    void shutdown() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * Queues a ride request; the future completes once the request is
+     * booked or given up on. Never blocks: a full queue or a stopped
+     * dispatcher fails the future.
+     */
+    CompletableFuture<DispatchEngine.Assignment> submit(String bookingId, String customer, String from,
+                                                        String to, String type) {
+        double[] pickup = Places.resolve(from);
+        if (pickup == null) {
+            return CompletableFuture.completedFuture(
+                    new DispatchEngine.Assignment(BookingStore.BookResult.NO_SUCH_CAB, null));
+        }
+        SurgeTracker tracker = surge;
+        if (tracker != null) {
+            tracker.recordRequest(pickup[0], pickup[1]);
+        }
+        Request request = new Request(bookingId, customer, from, to, type, pickup);
+        if (!running) {
+            request.result.completeExceptionally(new RejectedExecutionException("Dispatcher stopped"));
+        } else if (!queue.offer(request)) {
+            request.result.completeExceptionally(new RejectedExecutionException("Dispatcher overloaded"));
+        } else if (!running && queue.remove(request)) {
+            // Stopped while we queued, possibly after the worker's last drain; if not, the worker fails it
+            request.result.completeExceptionally(new RejectedExecutionException("Dispatcher stopped"));
+        }
+        return request.result;
+    }
+
+    // -------------------- METRICS --------------------
+    /** Assignments per second over the last few seconds. */
+    synchronized double throughputPerSecond() {
+        long now = System.nanoTime();
+        int samples = (int) Math.min(assignments, SAMPLES);
+        int inWindow = 0;
+        long oldest = now;
+        for (int i = 0; i < samples; i++) {
+            long t = completedAt[i];
+            if (now - t <= RATE_WINDOW_NANOS) {
+                inWindow++;
+                oldest = Math.min(oldest, t);
+            }
+        }
+        if (inWindow == 0) {
+            return 0;
+        }
+        // A busy dispatcher overwrites the sample ring before the window ends
+        long span = inWindow == SAMPLES ? Math.max(now - oldest, 1) : RATE_WINDOW_NANOS;
+        return inWindow * 1e9 / span;
+    }
+
+    /** 99th percentile submit-to-booked latency over recent assignments, in ms. */
+    synchronized double p99LatencyMillis() {
+        int samples = (int) Math.min(assignments, SAMPLES);
+        if (samples == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latencies, samples);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(samples * 0.99) - 1] / 1e6;
+    }
+
+    synchronized long totalAssignments() {
+        return assignments;
+    }
+
+    int pending() {
+        return queue.size();
+    }
+
+    private synchronized void record(List<Request> booked) {
+        long now = System.nanoTime();
+        for (Request request : booked) {
+            int slot = (int) (assignments++ % SAMPLES);
+            completedAt[slot] = now;
+            latencies[slot] = now - request.submittedNanos;
+        }
+    }
+
+    // -------------------- WORKER THREAD --------------------
+    private void dispatchLoop() {
+        List<Request> batch = new ArrayList<>(MAX_BATCH);
+        while (running) {
+            try {
+                batch.addAll(carried);
+                carried.clear();
+                if (batch.isEmpty()) {
+                    Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                }
+                // Let the window fill up, unless the batch is already full
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < MAX_BATCH) {
+                    long left = deadline - System.nanoTime();
+                    Request next = left > 0 ? queue.poll(left, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                dispatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                for (Request request : batch) {
+                    request.result.completeExceptionally(e);
+                }
+                e.printStackTrace();
+            }
+            batch.clear();
+        }
+        List<Request> abandoned = new ArrayList<>(batch);
+        abandoned.addAll(carried);
+        queue.drainTo(abandoned);
+        for (Request request : abandoned) {
+            request.result.completeExceptionally(new RejectedExecutionException("Dispatcher stopped"));
+        }
+    }
+
+    private void dispatch(List<Request> batch) {
+        List<Request> open = new ArrayList<>(batch);
+        for (int round = 0; round < MAX_ROUNDS && !open.isEmpty(); round++) {
+            List<Request> matched = new ArrayList<>();
+            List<Booking> proposals = new ArrayList<>();
+            List<Request> unmatched = new ArrayList<>();
+            match(open, matched, proposals, unmatched);
+
+            if (!proposals.isEmpty()) {
+                BookingStore.BookResult[] results = store.bookAllIfFree(proposals);
+                if (results[0] == BookingStore.BookResult.BOOKED) {
+                    for (int i = 0; i < matched.size(); i++) {
+                        Cab cab = store.findCab(proposals.get(i).cabId);
+                        matched.get(i).result.complete(
+                                new DispatchEngine.Assignment(BookingStore.BookResult.BOOKED, cab));
+                    }
+                    record(matched);
+                    matched.clear();
+                } else {
+                    // Bad requests fail on their own; a cab taken meanwhile just means re-matching
+                    for (int i = 0; i < results.length; i++) {
+                        if (results[i] == BookingStore.BookResult.DUPLICATE_ID) {
+                            matched.get(i).result.complete(new DispatchEngine.Assignment(results[i], null));
+                        }
+                    }
+                    matched.removeIf(r -> r.result.isDone());
+                }
+            }
+            open = matched;
+            for (Request request : unmatched) {
+                if (++request.carryOvers <= MAX_CARRY_OVERS) {
+                    carried.add(request);
+                } else {
+                    request.result.complete(new DispatchEngine.Assignment(BookingStore.BookResult.NO_SUCH_CAB, null));
+                }
+            }
+        }
+        // Still conflicting after several rounds: fall back to booking one at a time
+        for (Request request : open) {
+            DispatchEngine.Assignment assignment = engine.assign(request.bookingId, request.customer,
+                    request.from, request.to, request.type);
+            request.result.complete(assignment);
+            if (assignment.result == BookingStore.BookResult.BOOKED) {
+                record(List.of(request));
+            }
+        }
+    }
+
+    /**
+     * Solves the batch over each request's candidate cabs. Requests that
+     * got a cab go to {@code matched} with their booking at the same index
+     * in {@code proposals}; the rest go to {@code unmatched}.
+     */
+    private void match(List<Request> requests, List<Request> matched, List<Booking> proposals,
+                       List<Request> unmatched) {
+        int n = requests.size();
+        List<List<Cab>> candidates = new ArrayList<>(n);
+        Map<Cab, Integer> column = new IdentityHashMap<>();
+        List<Cab> cabs = new ArrayList<>();
+        for (Request request : requests) {
+            List<Cab> near = engine.nearestFree(request.lat, request.lon, CANDIDATES, request.type);
+            candidates.add(near);
+            for (Cab cab : near) {
+                if (column.putIfAbsent(cab, cabs.size()) == null) {
+                    cabs.add(cab);
+                }
+            }
+        }
+        // Pad with dummy columns so every request can be "assigned"; a
+        // dummy or non-candidate cell means no cab for that request
+        int m = Math.max(cabs.size(), n);
+        double[][] cost = new double[n][m];
+        for (int i = 0; i < n; i++) {
+            Arrays.fill(cost[i], NO_EDGE);
+            Request request = requests.get(i);
+            for (Cab cab : candidates.get(i)) {
+                cost[i][column.get(cab)] = Places.distanceKm(request.lat, request.lon, cab.lat, cab.lon);
+            }
+        }
+        int[] assigned = hungarian(cost, n, m);
+        for (int i = 0; i < n; i++) {
+            Request request = requests.get(i);
+            int j = assigned[i];
+            if (j >= 0 && cost[i][j] < NO_EDGE) {
+                Cab cab = cabs.get(j);
+                matched.add(request);
+                proposals.add(new Booking(request.bookingId, cab.id, request.customer, request.from, request.to,
+                        store.quote(cab, request.from, request.to)));
+            } else {
+                unmatched.add(request);
+            }
+        }
+    }
+
+    /**
+     * Minimum-cost assignment of n rows to distinct columns out of m >= n,
+     * O(n^2 m) with row/column potentials. Returns the column per row.
+     */
+    static int[] hungarian(double[][] cost, int n, int m) {
+        double[] u = new double[n + 1];
+        double[] v = new double[m + 1];
+        int[] p = new int[m + 1];   // row (1-based) matched to each column, 0 = free
+        int[] way = new int[m + 1];
+        double[] minv = new double[m + 1];
+        boolean[] used = new boolean[m + 1];
+        for (int i = 1; i <= n; i++) {
+            p[0] = i;
+            int j0 = 0;
+            Arrays.fill(minv, Double.POSITIVE_INFINITY);
+            Arrays.fill(used, false);
+            do {
+                used[j0] = true;
+                int i0 = p[j0];
+                int j1 = 0;
+                double delta = Double.POSITIVE_INFINITY;
+                for (int j = 1; j <= m; j++) {
+                    if (!used[j]) {
+                        double cur = cost[i0 - 1][j - 1] - u[i0] - v[j];
+                        if (cur < minv[j]) {
+                            minv[j] = cur;
+                            way[j] = j0;
+                        }
+                        if (minv[j] < delta) {
+                            delta = minv[j];
+                            j1 = j;
+                        }
+                    }
+                }
+                for (int j = 0; j <= m; j++) {
+                    if (used[j]) {
+                        u[p[j]] += delta;
+                        v[j] -= delta;
+                    } else {
+                        minv[j] -= delta;
+                    }
+                }
+                j0 = j1;
+            } while (p[j0] != 0);
+            do {
+                int j1 = way[j0];
+                p[j0] = p[j1];
+                j0 = j1;
+            } while (j0 != 0);
+        }
+        int[] assigned = new int[n];
+        Arrays.fill(assigned, -1);
+        for (int j = 1; j <= m; j++) {
+            if (p[j] != 0) {
+                assigned[p[j] - 1] = j - 1;
+            }
+        }
+        return assigned;
+    }
+}
@@ -0,0 +1,37 @@
+package in.java.main;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+class Booking {
+    private static final AtomicReferenceFieldUpdater<Booking, BookingStatus> STATUS =
+            AtomicReferenceFieldUpdater.newUpdater(Booking.class, BookingStatus.class, "status");
+
+    String id, cabId, customer, from, to;
+    // Written by whichever thread moves the booking along; read by the UI
+    volatile BookingStatus status;
+    double fare;
+    // Epoch millis when the booking was made; 0 for history recorded before timestamps existed
+    long createdAt;
+    // Set by the store once listeners have heard of the booking; it can't change status before that
+    volatile boolean announced;
+
+    Booking(String id, String cabId, String customer, String from, String to, double fare) {
+        this.id = id;
+        this.cabId = Interner.canonical(cabId);
+        this.customer = Interner.canonical(customer);
+        this.from = Interner.canonical(from);
+        this.to = Interner.canonical(to);
+        this.fare = fare;
+        this.status = BookingStatus.ASSIGNED;
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    boolean isActive() {
+        return status.isActive();
+    }
+
+    /** Sets the status to {@code next} only if it is still {@code expected}. */
+    boolean moveStatus(BookingStatus expected, BookingStatus next) {
+        return STATUS.compareAndSet(this, expected, next);
+    }
+}
@@ -0,0 +1,620 @@
+package in.java.main;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JSON over HTTP for the rider and driver apps, served straight from the
+ * in-memory store with the JDK's built-in server.
+ * <pre>
+ *   GET  /api/cabs[?available=true&amp;type=SUV&amp;limit=100]
+ *   POST /api/cabs                        {"id","driver","location","type","fare"}
+ *   GET  /api/cabs/{id}
+ *   POST /api/bookings                    {"id"?, "cabId"?, "customer","from","to","type"?}
+ *   GET  /api/bookings/{id}
+ *   POST /api/bookings/{id}/start | /complete | /cancel
+ *   GET  /api/dashboard
+ * </pre>
+ * A booking without a cab is auto-assigned through the
+ * {@link BatchDispatcher}; its response is written when the dispatcher
+ * answers, so no handler thread waits out the batch window. Everything else
+ * is an O(1) store operation, which keeps a small pool busy rather than
+ * blocked. Without an id a booking gets a generated one. Once the journal
+ * can no longer save changes, every change is refused with 503.
+ * <p>
+ * Run {@link #main} to serve the API without the Swing UI.
+ */
+final class BookingApi {
+
+    static final int DEFAULT_PORT = 8080;
+    static final int DEFAULT_POSITION_PORT = 9090;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final int MAX_LIST = 1000;
+    private static final int BACKLOG = 1024;
+
+    private final BookingStore store;
+    private final BatchDispatcher dispatcher;
+    private final SurgeTracker surgeTracker;
+    private final String runId = Long.toString(System.currentTimeMillis() % 1_000_000, 36).toUpperCase();
+    private final AtomicLong nextBooking = new AtomicLong();
+
+    private HttpServer server;
+    private volatile ExecutorService executor;
+    // Set once changes can no longer be saved
+    private volatile String refusal;
+
+    BookingApi(BookingStore store, BatchDispatcher dispatcher, SurgeTracker surgeTracker) {
+        this.store = store;
+        this.dispatcher = dispatcher;
+        this.surgeTracker = surgeTracker;
+    }
+
+    /** Starts listening on all interfaces; port 0 picks a free one. */
+    synchronized void start(int port) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("API already started");
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(4, 2 * Runtime.getRuntime().availableProcessors()), r -> {
+            Thread thread = new Thread(r, "api-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Otherwise the server leaves Nagle on and every small response waits out the client's delayed ACK
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        server.createContext("/api/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /** Answers every later change with 503 and {@code reason}; reads keep working. */
+    void refuseChanges(String reason) {
+        this.refusal = reason;
+    }
+
+    /** The port actually bound, e.g. after starting on port 0. */
+    synchronized int port() {
+        return server.getAddress().getPort();
+    }
+
+    synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdown();
+            server = null;
+        }
+    }
+
+    // -------------------- ROUTING --------------------
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String[] path = exchange.getRequestURI().getPath().substring("/api/".length()).split("/");
+            String method = exchange.getRequestMethod();
+            String resource = path[0];
+            String refused = refusal;
+            if (refused != null && !method.equals("GET")) {
+                error(exchange, 503, refused);
+                return;
+            }
+            if (resource.equals("cabs") && path.length == 1) {
+                if (method.equals("GET")) {
+                    listCabs(exchange);
+                } else if (method.equals("POST")) {
+                    addCab(exchange);
+                } else {
+                    error(exchange, 405, "Use GET or POST");
+                }
+            } else if (resource.equals("cabs") && path.length == 2 && method.equals("GET")) {
+                Cab cab = store.findCab(path[1]);
+                if (cab == null) {
+                    error(exchange, 404, "Cab " + path[1] + " not found");
+                } else {
+                    send(exchange, 200, cabJson(new StringBuilder(), cab));
+                }
+            } else if (resource.equals("bookings") && path.length == 1 && method.equals("POST")) {
+                book(exchange);
+            } else if (resource.equals("bookings") && path.length == 2 && method.equals("GET")) {
+                Booking booking = store.findBooking(path[1]);
+                if (booking == null) {
+                    error(exchange, 404, "Booking " + path[1] + " not found");
+                } else {
+                    send(exchange, 200, bookingJson(new StringBuilder(), booking));
+                }
+            } else if (resource.equals("bookings") && path.length == 3 && method.equals("POST")) {
+                move(exchange, path[1], path[2]);
+            } else if (resource.equals("dashboard") && path.length == 1 && method.equals("GET")) {
+                dashboard(exchange);
+            } else {
+                error(exchange, 404, "No such endpoint: " + method + " " + exchange.getRequestURI().getPath());
+            }
+        } catch (IllegalArgumentException e) {
+            error(exchange, 400, e.getMessage());
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            error(exchange, 500, "Internal error");
+        }
+    }
+
+    // Falls back to the calling thread once the pool is shut down
+    private void respond(Runnable response) {
+        try {
+            executor.execute(response);
+        } catch (RejectedExecutionException e) {
+            response.run();
+        }
+    }
+
+    // -------------------- CABS --------------------
+    private void listCabs(HttpExchange exchange) throws IOException {
+        Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+        boolean availableOnly = Boolean.parseBoolean(query.get("available"));
+        String type = query.get("type");
+        int limit = Math.min(MAX_LIST, number(query, "limit", 100));
+        AvailabilityIndex availability = store.availability();
+        StringBuilder json = new StringBuilder("[");
+        int listed = 0;
+        for (Cab cab : store.cabs()) {
+            if (listed == limit) {
+                break;
+            }
+            if ((type == null || type.equalsIgnoreCase(cab.type)) && (!availableOnly || availability.isAvailable(cab.id))) {
+                if (listed++ > 0) {
+                    json.append(',');
+                }
+                cabJson(json, cab);
+            }
+        }
+        send(exchange, 200, json.append(']'));
+    }
+
+    private void addCab(HttpExchange exchange) throws IOException {
+        Map<String, String> body = parseObject(readBody(exchange));
+        double fare;
+        try {
+            fare = Double.parseDouble(required(body, "fare"));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Please enter a valid fare amount");
+        }
+        if (!(fare > 0) || Double.isInfinite(fare)) {
+            throw new IllegalArgumentException("Please enter a valid fare amount");
+        }
+        Cab cab = new Cab(required(body, "id"), required(body, "driver"), required(body, "location"),
+                required(body, "type"), fare);
+        if (!store.addCab(cab)) {
+            error(exchange, 409, "Cab ID " + cab.id + " already exists");
+            return;
+        }
+        send(exchange, 201, cabJson(new StringBuilder(), cab));
+    }
+
+    // -------------------- BOOKINGS --------------------
+    private void book(HttpExchange exchange) throws IOException {
+        Map<String, String> body = parseObject(readBody(exchange));
+        String customer = required(body, "customer");
+        String from = required(body, "from");
+        String to = required(body, "to");
+        String id = body.get("id");
+        String bookingId = id == null || id.isEmpty() ? "API" + runId + "-B" + nextBooking.incrementAndGet() : id;
+        String cabId = body.get("cabId");
+        if (cabId != null && !cabId.isEmpty()) {
+            surgeTracker.recordRequest(from);
+            answerBooking(exchange, store.bookIfFree(bookingId, cabId, customer, from, to), bookingId, false);
+            return;
+        }
+        if (Places.resolve(from) == null) {
+            throw new IllegalArgumentException("Unknown pickup location; use a known place or \"lat,lon\" to auto-assign");
+        }
+        String type = body.get("type");
+        // Answer on the pool, not on the dispatcher's thread
+        dispatcher.submit(bookingId, customer, from, to, type == null || type.isEmpty() ? null : type)
+                .whenCompleteAsync((assignment, failure) -> {
+                    try {
+                        if (failure != null) {
+                            error(exchange, 503, "Dispatch failed: " + failure.getMessage());
+                        } else {
+                            answerBooking(exchange, assignment.result, bookingId, true);
+                        }
+                    } catch (IOException e) {
+                        exchange.close(); // client went away
+                    }
+                }, this::respond);
+    }
+
+    private void answerBooking(HttpExchange exchange, BookingStore.BookResult result, String bookingId,
+                               boolean autoAssign) throws IOException {
+        switch (result) {
+            case BOOKED:
+                send(exchange, 201, bookingJson(new StringBuilder(), store.findBooking(bookingId)));
+                break;
+            case NO_SUCH_CAB:
+                if (autoAssign) {
+                    error(exchange, 503, "No free cab near the pickup right now");
+                } else {
+                    error(exchange, 404, "No such cab");
+                }
+                break;
+            case CAB_BUSY:
+                error(exchange, 409, "Cab is already on an active trip");
+                break;
+            case DUPLICATE_ID:
+                error(exchange, 409, "Booking ID " + bookingId + " already exists");
+                break;
+        }
+    }
+
+    private void move(HttpExchange exchange, String bookingId, String action) throws IOException {
+        BookingStatus next;
+        switch (action) {
+            case "start": next = BookingStatus.ON_TRIP; break;
+            case "complete": next = BookingStatus.COMPLETED; break;
+            case "cancel": next = BookingStatus.CANCELLED; break;
+            default:
+                error(exchange, 404, "Unknown action " + action + "; use start, complete or cancel");
+                return;
+        }
+        switch (store.transition(bookingId, next)) {
+            case MOVED:
+                send(exchange, 200, bookingJson(new StringBuilder(), store.findBooking(bookingId)));
+                break;
+            case NOT_ALLOWED:
+                error(exchange, 409, "Booking " + bookingId + " is " + store.findBooking(bookingId).status.label
+                        + " and can't be moved to " + next.label);
+                break;
+            default:
+                error(exchange, 404, "Booking " + bookingId + " not found");
+        }
+    }
+
+    private void dashboard(HttpExchange exchange) throws IOException {
+        DashboardAggregates aggregates = store.aggregates();
+        AvailabilityIndex availability = store.availability();
+        double dispatchRate = dispatcher.throughputPerSecond();
+        double dispatchP99 = dispatcher.p99LatencyMillis();
+        StringBuilder json = store.readConsistent(() -> new StringBuilder()
+                .append("{\"totalCabs\":").append(aggregates.totalCabs())
+                .append(",\"availableCabs\":").append(availability.availableCount())
+                .append(",\"totalBookings\":").append(aggregates.totalBookings())
+                .append(",\"activeBookings\":").append(aggregates.activeBookings())
+                .append(",\"completedBookings\":").append(aggregates.completedBookings())
+                .append(",\"cancelledBookings\":").append(aggregates.cancelledBookings())
+                .append(",\"totalRevenue\":").append(money(aggregates.totalRevenue()))
+                .append(",\"averageFare\":").append(money(aggregates.averageFare())));
+        json.append(",\"dispatchPerSecond\":").append(money(dispatchRate))
+                .append(",\"dispatchP99Millis\":").append(money(dispatchP99)).append('}');
+        send(exchange, 200, json);
+    }
+
+    // -------------------- JSON --------------------
+    private StringBuilder cabJson(StringBuilder json, Cab cab) {
+        json.append("{\"id\":");
+        string(json, cab.id).append(",\"driver\":");
+        string(json, cab.driver).append(",\"location\":");
+        string(json, cab.location).append(",\"type\":");
+        string(json, cab.type).append(",\"fare\":").append(money(cab.fare));
+        double lat = cab.lat, lon = cab.lon;
+        if (!Double.isNaN(lat) && !Double.isNaN(lon)) {
+            json.append(",\"lat\":").append(lat).append(",\"lon\":").append(lon);
+        }
+        return json.append(",\"available\":").append(store.availability().isAvailable(cab.id)).append('}');
+    }
+
+    private static StringBuilder bookingJson(StringBuilder json, Booking booking) {
+        json.append("{\"id\":");
+        string(json, booking.id).append(",\"cabId\":");
+        string(json, booking.cabId).append(",\"customer\":");
+        string(json, booking.customer).append(",\"from\":");
+        string(json, booking.from).append(",\"to\":");
+        string(json, booking.to).append(",\"fare\":").append(money(booking.fare)).append(",\"status\":");
+        string(json, booking.status.label);
+        if (booking.createdAt > 0) {
+            json.append(",\"createdAt\":").append(booking.createdAt);
+        }
+        return json.append('}');
+    }
+
+    private static String money(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    private static StringBuilder string(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n"); break;
+                case '\r': json.append("\\r"); break;
+                case '\t': json.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        return json.append('"');
+    }
+
+    /**
+     * Parses a flat JSON object whose values are strings, numbers, booleans
+     * or null. Values come back as text; null values are left out.
+     */
+    static Map<String, String> parseObject(String text) {
+        Map<String, String> fields = new HashMap<>();
+        int[] at = {skipSpace(text, 0)};
+        expect(text, at, '{');
+        if (peek(text, at) == '}') {
+            at[0]++;
+        } else {
+            while (true) {
+                String key = readString(text, at);
+                expect(text, at, ':');
+                String value = peek(text, at) == '"' ? readString(text, at) : readLiteral(text, at);
+                if (value != null) {
+                    fields.put(key, value);
+                }
+                if (peek(text, at) == ',') {
+                    at[0]++;
+                    continue;
+                }
+                expect(text, at, '}');
+                break;
+            }
+        }
+        if (skipSpace(text, at[0]) != text.length()) {
+            throw new IllegalArgumentException("Trailing data after JSON object");
+        }
+        return fields;
+    }
+
+    private static char peek(String text, int[] at) {
+        at[0] = skipSpace(text, at[0]);
+        if (at[0] >= text.length()) {
+            throw new IllegalArgumentException("Unexpected end of JSON");
+        }
+        return text.charAt(at[0]);
+    }
+
+    private static void expect(String text, int[] at, char c) {
+        if (peek(text, at) != c) {
+            throw new IllegalArgumentException("Expected '" + c + "' at offset " + at[0]);
+        }
+        at[0]++;
+    }
+
+    private static String readString(String text, int[] at) {
+        expect(text, at, '"');
+        StringBuilder out = new StringBuilder();
+        int i = at[0];
+        while (true) {
+            if (i >= text.length()) {
+                throw new IllegalArgumentException("Unterminated JSON string");
+            }
+            char c = text.charAt(i++);
+            if (c == '"') {
+                break;
+            }
+            if (c != '\\') {
+                out.append(c);
+                continue;
+            }
+            if (i >= text.length()) {
+                throw new IllegalArgumentException("Unterminated JSON string");
+            }
+            char escaped = text.charAt(i++);
+            switch (escaped) {
+                case 'n': out.append('\n'); break;
+                case 'r': out.append('\r'); break;
+                case 't': out.append('\t'); break;
+                case 'b': out.append('\b'); break;
+                case 'f': out.append('\f'); break;
+                case 'u':
+                    if (i + 4 > text.length()) {
+                        throw new IllegalArgumentException("Bad \\u escape in JSON string");
+                    }
+                    try {
+                        out.append((char) Integer.parseInt(text.substring(i, i + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Bad \\u escape in JSON string");
+                    }
+                    i += 4;
+                    break;
+                default: out.append(escaped); // \" \\ \/
+            }
+        }
+        at[0] = i;
+        return out.toString();
+    }
+
+    private static String readLiteral(String text, int[] at) {
+        int start = at[0];
+        int i = start;
+        while (i < text.length() && "{}[],: \t\r\n\"".indexOf(text.charAt(i)) < 0) {
+            i++;
+        }
+        String literal = text.substring(start, i);
+        at[0] = i;
+        if (literal.equals("null")) {
+            return null;
+        }
+        if (literal.equals("true") || literal.equals("false")) {
+            return literal;
+        }
+        try {
+            Double.parseDouble(literal);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Unsupported JSON value at offset " + start);
+        }
+        return literal;
+    }
+
+    private static int skipSpace(String text, int i) {
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    // -------------------- HTTP PLUMBING --------------------
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                throw new IllegalArgumentException("Request body too large");
+            }
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String required(Map<String, String> body, String field) {
+        String value = body.get(field);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException("Missing field: " + field);
+        }
+        return value.trim();
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static int number(Map<String, String> params, String name, int fallback) {
+        String value = params.get(name);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            int n = Integer.parseInt(value);
+            if (n < 0) {
+                throw new NumberFormatException();
+            }
+            return n;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad " + name + ": " + value);
+        }
+    }
+
+    private static void error(HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        send(exchange, status, string(json, message).append('}'));
+    }
+
+    private static void send(HttpExchange exchange, int status, CharSequence json) throws IOException {
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // -------------------- HEADLESS MAIN --------------------
+    /**
+     * Serves the API on the same persistent data as the desktop app, without
+     * a window: {@code BookingApi [--port N] [--data DIR] [--positions UDP_PORT] [--evict-after MINUTES]}.
+     */
+    public static void main(String[] args) throws Exception {
+        int port = DEFAULT_PORT;
+        Path dataDir = Paths.get("data");
+        int positionPort = -1;
+        long evictAfter = BookingEvictor.DEFAULT_WINDOW_MILLIS;
+        try {
+            for (int i = 0; i < args.length; i += 2) {
+                String value = i + 1 < args.length ? args[i + 1] : "";
+                switch (args[i]) {
+                    case "--port": port = Integer.parseInt(value); break;
+                    case "--data": dataDir = Paths.get(value); break;
+                    case "--positions": positionPort = Integer.parseInt(value); break;
+                    case "--evict-after": evictAfter = (long) (Double.parseDouble(value) * 60_000); break;
+                    default: throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: BookingApi [--port N] [--data DIR] [--positions UDP_PORT]"
+                    + " [--evict-after MINUTES]");
+            System.exit(2);
+        }
+
+        BookingStore store = new BookingStore();
+        FareEngine fareEngine = new FareEngine();
+        SurgeTracker surgeTracker = new SurgeTracker(store, 60);
+        DispatchEngine engine = new DispatchEngine(store);
+        BatchDispatcher dispatcher = new BatchDispatcher(store, engine, 50);
+        EventBus eventBus = new EventBus(EventBus.DEFAULT_CAPACITY);
+        AnalyticsEngine analytics = new AnalyticsEngine();
+        store.setPricing(fareEngine);
+        fareEngine.setSurgeSource(surgeTracker);
+        dispatcher.setSurgeTracker(surgeTracker);
+        engine.setSurgeTracker(surgeTracker);
+        store.addListener(eventBus);
+        eventBus.subscribe("analytics", analytics);
+
+        BookingArchive archive = BookingArchive.open(dataDir);
+        store.attachArchive(archive);
+        analytics.loadArchive(archive);
+        BookingApi api = new BookingApi(store, dispatcher, surgeTracker);
+        BookingJournal journal = new BookingJournal(dataDir, store, 250_000);
+        journal.setFailureListener(e -> {
+            System.err.println("Journal write failed, changes are no longer saved: " + e.getMessage());
+            api.refuseChanges("Changes can't be saved right now: " + e.getMessage());
+        });
+        journal.recover();
+        journal.start(eventBus);
+        dispatcher.start();
+        surgeTracker.start();
+        BookingEvictor evictor = new BookingEvictor(store);
+        evictor.setWindowMillis(evictAfter);
+        evictor.start();
+
+        PositionIngest positions = new PositionIngest(store, engine);
+        try {
+            api.start(port);
+            if (positionPort >= 0) {
+                positions.start(positionPort);
+                System.out.println("Taking cab positions on UDP port " + positions.port());
+            }
+        } catch (IOException e) {
+            System.err.println("Could not listen: " + e.getMessage());
+            eventBus.shutdown();
+            System.exit(1);
+        }
+        System.out.println("Booking API listening on port " + api.port() + " with " + store.cabs().size()
+                + " cabs; Ctrl+C to stop.");
+        // The event bus's shutdown hook drains the journal on exit
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,628 @@
+package in.java.main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Memory-mapped, append-only archive of completed bookings.
+ * <p>
+ * Rows are fixed width and stored column by column inside blocks of
+ * {@link #BLOCK_ROWS} rows, so a scan over one column walks contiguous
+ * memory. Text fields are dictionary-encoded to int codes (status to a
+ * byte) and fares are kept as integer paise. The dictionaries live in a
+ * side file and are the only per-value heap cost; they hold the repeating
+ * values (cabs, customers, places). Booking ids are unique, so they stay
+ * on disk instead: an id column plus a mapped hash table from id to row,
+ * and heap use doesn't grow with the length of the history. Scans over the
+ * mapped columns allocate nothing.
+ * <p>
+ * One thread appends at a time; any number of threads may read rows below
+ * {@link #size()} concurrently.
+ */
+final class BookingArchive implements Closeable {
+
+    static final int BLOCK_ROWS = 1 << 16;
+
+    private static final int MAGIC = 0x43424B41; // "CBKA"
+    private static final int VERSION = 3; // 3: ids moved from the dictionaries to their own column
+    private static final int HEADER_BYTES = 4096;
+
+    // Column layout inside a block
+    private static final int CAB_OFFSET = 0;
+    private static final int CUSTOMER_OFFSET = CAB_OFFSET + 4 * BLOCK_ROWS;
+    private static final int FROM_OFFSET = CUSTOMER_OFFSET + 4 * BLOCK_ROWS;
+    private static final int TO_OFFSET = FROM_OFFSET + 4 * BLOCK_ROWS;
+    private static final int FARE_OFFSET = TO_OFFSET + 4 * BLOCK_ROWS;
+    private static final int STATUS_OFFSET = FARE_OFFSET + 8 * BLOCK_ROWS;
+    private static final int V1_BLOCK_BYTES = STATUS_OFFSET + BLOCK_ROWS;
+    // Added in version 2 at the end of the block, so a version 1 block is a prefix of it
+    private static final int CREATED_OFFSET = V1_BLOCK_BYTES;
+    private static final int BLOCK_BYTES = CREATED_OFFSET + 8 * BLOCK_ROWS;
+
+    // Dictionary file column tags
+    private static final byte ID = 0, CAB = 1, CUSTOMER = 2, FROM = 3, TO = 4, STATUS = 5;
+
+    private final FileChannel data;
+    private final MappedByteBuffer header;
+    private final Path dictionaryFile;
+    private final IdColumn ids;
+    private volatile MappedByteBuffer[] blocks = new MappedByteBuffer[0];
+    private volatile int size;
+    // Fares of archived trips that weren't cancelled; counted once on open, then kept up by append
+    private volatile long revenuePaise;
+
+    private final Dictionary cabs = new Dictionary();
+    private final Dictionary customers = new Dictionary();
+    private final Dictionary places = new Dictionary(); // shared by from/to
+    private final Dictionary statuses = new Dictionary();
+    // Parsed statuses by dictionary code; racy, but every thread caches the same constant
+    private final BookingStatus[] statusByCode = new BookingStatus[Byte.MAX_VALUE + 1];
+    private final ByteArrayOutputStream entryBytes = new ByteArrayOutputStream(64);
+    private final DataOutputStream entryOut = new DataOutputStream(entryBytes);
+    private BufferedOutputStream dictionaryOut;
+    private FileOutputStream dictionaryFileOut;
+    private long dictionaryLength;
+    private boolean broken;
+
+    private BookingArchive(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        dictionaryFile = directory.resolve("archive.dict");
+        data = FileChannel.open(directory.resolve("archive.dat"), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        header = data.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        ids = new IdColumn(directory);
+    }
+
+    /** Opens (or creates) the archive in the given directory, upgrading an older format first. */
+    static BookingArchive open(Path directory) throws IOException {
+        upgradeFromVersion1(directory.resolve("archive.dat"));
+        BookingArchive archive = new BookingArchive(directory);
+        archive.load();
+        return archive;
+    }
+
+    /**
+     * Rewrites a version 1 data file (no creation time column) in the
+     * current layout. Old blocks are copied as prefixes of the wider new
+     * blocks, leaving creation times 0 ("unknown"). The copy is built in a
+     * temporary file and moved over the original, so a crash midway leaves
+     * the version 1 file untouched.
+     */
+    private static void upgradeFromVersion1(Path dataFile) throws IOException {
+        if (!Files.exists(dataFile) || Files.size(dataFile) < HEADER_BYTES) {
+            return;
+        }
+        Path temp = dataFile.resolveSibling(dataFile.getFileName() + ".upgrade");
+        try (FileChannel old = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+            MappedByteBuffer oldHeader = old.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (oldHeader.getInt(0) != MAGIC || oldHeader.getInt(4) != 1) {
+                return;
+            }
+            int rows = oldHeader.getInt(8);
+            try (FileChannel upgraded = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                for (int b = 0; (long) b * BLOCK_ROWS < rows; b++) {
+                    long from = HEADER_BYTES + (long) b * V1_BLOCK_BYTES;
+                    long to = HEADER_BYTES + (long) b * BLOCK_BYTES;
+                    long copied = 0;
+                    while (copied < V1_BLOCK_BYTES) {
+                        copied += old.transferTo(from + copied, V1_BLOCK_BYTES - copied,
+                                upgraded.position(to + copied));
+                    }
+                }
+                MappedByteBuffer newHeader = upgraded.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+                newHeader.put(oldHeader.duplicate());
+                newHeader.putInt(4, 2); // ids still in the dictionaries; load() moves them
+                newHeader.force();
+                upgraded.force(true);
+            }
+        }
+        Files.move(temp, dataFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void load() throws IOException {
+        int rows = 0;
+        int version = VERSION;
+        if (header.getInt(0) == MAGIC) {
+            version = header.getInt(4);
+            if (version != 2 && version != VERSION) {
+                throw new IOException("Unsupported archive version: " + version);
+            }
+            rows = header.getInt(8);
+            dictionaryLength = header.getLong(16);
+        } else {
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+            header.putInt(8, 0);
+            header.putLong(16, 0);
+            header.putLong(24, 0);
+            header.force();
+        }
+        // Version 2 kept ids in the dictionary file, in row order; they are copied out below
+        boolean moveIds = version == 2;
+        ids.load(moveIds ? 0 : rows, moveIds ? 0 : header.getLong(24));
+        int movedIds = 0;
+
+        // Anything past the committed dictionary length is from an append that never committed
+        if (Files.exists(dictionaryFile)) {
+            try (FileChannel channel = FileChannel.open(dictionaryFile, StandardOpenOption.WRITE)) {
+                if (channel.size() > dictionaryLength) {
+                    channel.truncate(dictionaryLength);
+                }
+            }
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(dictionaryFile), 1 << 16))) {
+                while (true) {
+                    byte column;
+                    try {
+                        column = in.readByte();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    String value = in.readUTF();
+                    if (column != ID) {
+                        dictionary(column).add(value);
+                    } else if (moveIds && movedIds < rows) {
+                        ids.add(movedIds++, value);
+                    }
+                }
+            }
+        }
+        if (moveIds) {
+            if (movedIds != rows) {
+                throw new IOException("Archive has " + rows + " rows but " + movedIds + " ids");
+            }
+            // The id column is durable before the header stops pointing at the old ids
+            ids.commit(rows);
+            header.putLong(24, ids.textLength());
+            header.putInt(4, VERSION);
+            header.force();
+        }
+
+        ensureBlocks(rows);
+        size = rows;
+        long revenue = 0;
+        for (int row = 0; row < rows; row++) {
+            if (status(row) != BookingStatus.CANCELLED) {
+                revenue += farePaise(row);
+            }
+        }
+        revenuePaise = revenue;
+        dictionaryFileOut = new FileOutputStream(dictionaryFile.toFile(), true);
+        dictionaryOut = new BufferedOutputStream(dictionaryFileOut, 1 << 16);
+    }
+
+    /**
+     * Appends bookings and makes them durable: dictionaries and columns are
+     * forced to disk before the header's row count is bumped, so a crash
+     * mid-append leaves the archive exactly as it was.
+     */
+    synchronized void append(List<Booking> bookings) throws IOException {
+        if (broken) {
+            throw new IOException("Archive is unusable after an earlier write failure; restart to recover");
+        }
+        if (bookings.isEmpty()) {
+            return;
+        }
+        try {
+            appendRows(bookings);
+        } catch (IOException | RuntimeException e) {
+            // In-memory dictionaries may now be ahead of the committed file
+            broken = true;
+            throw e;
+        }
+    }
+
+    private void appendRows(List<Booking> bookings) throws IOException {
+        int first = size;
+        int last = first + bookings.size();
+        ensureBlocks(last);
+        MappedByteBuffer[] current = blocks;
+        long revenue = 0;
+        for (int i = 0; i < bookings.size(); i++) {
+            Booking b = bookings.get(i);
+            int row = first + i;
+            MappedByteBuffer block = current[row / BLOCK_ROWS];
+            int r = row % BLOCK_ROWS;
+            if (ids.find(b.id, row) >= 0) {
+                throw new IOException("Booking " + b.id + " is already archived");
+            }
+            ids.add(row, b.id);
+            block.putInt(CAB_OFFSET + 4 * r, encode(CAB, cabs, b.cabId));
+            block.putInt(CUSTOMER_OFFSET + 4 * r, encode(CUSTOMER, customers, b.customer));
+            block.putInt(FROM_OFFSET + 4 * r, encode(FROM, places, b.from));
+            block.putInt(TO_OFFSET + 4 * r, encode(TO, places, b.to));
+            long paise = Math.round(b.fare * 100);
+            block.putLong(FARE_OFFSET + 8 * r, paise);
+            if (b.status != BookingStatus.CANCELLED) {
+                revenue += paise;
+            }
+            block.put(STATUS_OFFSET + r, (byte) encode(STATUS, statuses, b.status.label));
+            block.putLong(CREATED_OFFSET + 8 * r, b.createdAt);
+        }
+        dictionaryOut.flush();
+        dictionaryFileOut.getFD().sync();
+        for (int b = first / BLOCK_ROWS; b <= (last - 1) / BLOCK_ROWS; b++) {
+            current[b].force();
+        }
+        ids.commit(last);
+        header.putInt(8, last);
+        header.putLong(16, dictionaryLength);
+        header.putLong(24, ids.textLength());
+        header.force();
+        revenuePaise += revenue;
+        size = last;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** Fares of the archived trips that weren't cancelled, in paise. */
+    long revenuePaise() {
+        return revenuePaise;
+    }
+
+    // -------------------- ROW ACCESS --------------------
+    /** Row of the archived booking with this id, or -1. */
+    int rowOf(String bookingId) {
+        return ids.find(bookingId, size);
+    }
+
+    String id(int row) {
+        return ids.id(row);
+    }
+
+    String cabId(int row) {
+        return cabs.value(intAt(row, CAB_OFFSET));
+    }
+
+    String customer(int row) {
+        return customers.value(intAt(row, CUSTOMER_OFFSET));
+    }
+
+    String from(int row) {
+        return places.value(intAt(row, FROM_OFFSET));
+    }
+
+    String to(int row) {
+        return places.value(intAt(row, TO_OFFSET));
+    }
+
+    long farePaise(int row) {
+        return block(row).getLong(FARE_OFFSET + 8 * (row % BLOCK_ROWS));
+    }
+
+    double fare(int row) {
+        return farePaise(row) / 100.0;
+    }
+
+    BookingStatus status(int row) {
+        int code = block(row).get(STATUS_OFFSET + row % BLOCK_ROWS);
+        BookingStatus status = statusByCode[code];
+        if (status == null) {
+            status = BookingStatus.parse(statuses.value(code));
+            statusByCode[code] = status;
+        }
+        return status;
+    }
+
+    /** Epoch millis the booking was made, or 0 if unknown. */
+    long createdAt(int row) {
+        return block(row).getLong(CREATED_OFFSET + 8 * (row % BLOCK_ROWS));
+    }
+
+    /** Rebuilds a full Booking object; allocates, so meant for single lookups. */
+    Booking materialize(int row) {
+        Booking b = new Booking(id(row), cabId(row), customer(row), from(row), to(row), fare(row));
+        b.status = status(row);
+        b.createdAt = createdAt(row);
+        return b;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        dictionaryOut.close();
+        ids.close();
+        data.close();
+    }
+
+    // -------------------- INTERNALS --------------------
+    private MappedByteBuffer block(int row) {
+        return blocks[row / BLOCK_ROWS];
+    }
+
+    private int intAt(int row, int columnOffset) {
+        return block(row).getInt(columnOffset + 4 * (row % BLOCK_ROWS));
+    }
+
+    private void ensureBlocks(int rows) throws IOException {
+        int needed = (rows + BLOCK_ROWS - 1) / BLOCK_ROWS;
+        MappedByteBuffer[] current = blocks;
+        if (needed <= current.length) {
+            return;
+        }
+        MappedByteBuffer[] grown = new MappedByteBuffer[Math.max(needed, current.length * 2)];
+        System.arraycopy(current, 0, grown, 0, current.length);
+        for (int b = current.length; b < grown.length; b++) {
+            grown[b] = data.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + (long) b * BLOCK_BYTES, BLOCK_BYTES);
+        }
+        blocks = grown;
+    }
+
+    private Dictionary dictionary(byte column) {
+        switch (column) {
+            case CAB: return cabs;
+            case CUSTOMER: return customers;
+            case FROM:
+            case TO: return places;
+            case STATUS: return statuses;
+            default: throw new IllegalArgumentException("Unknown dictionary column: " + column);
+        }
+    }
+
+    private int encode(byte column, Dictionary dictionary, String value) throws IOException {
+        String v = value != null ? value : "";
+        int code = dictionary.code(v);
+        if (code < 0) {
+            code = dictionary.add(v);
+            writeEntry(column, v);
+        }
+        if (column == STATUS && code > Byte.MAX_VALUE) {
+            throw new IOException("Too many distinct booking statuses for the archive");
+        }
+        return code;
+    }
+
+    private void writeEntry(byte column, String value) throws IOException {
+        entryBytes.reset();
+        entryOut.writeByte(column);
+        entryOut.writeUTF(value);
+        entryBytes.writeTo(dictionaryOut);
+        dictionaryLength += entryBytes.size();
+    }
+
+    /** String <-> dense int code, append-only. Readers see codes published before the row. */
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private volatile String[] values = new String[16];
+        private int count;
+
+        synchronized int code(String value) {
+            Integer code = codes.get(value);
+            return code == null ? -1 : code;
+        }
+
+        synchronized int add(String value) {
+            if (count == values.length) {
+                String[] grown = new String[count * 2];
+                System.arraycopy(values, 0, grown, 0, count);
+                values = grown;
+            }
+            values[count] = value;
+            codes.put(value, count);
+            return count++;
+        }
+
+        String value(int code) {
+            return values[code];
+        }
+    }
+
+    /**
+     * Booking ids on disk. {@code archive.ids} holds each id as a u16 length
+     * and its UTF-8 bytes, {@code archive.ido} the int offset of each row's
+     * id, and {@code archive.idh} an open-addressing hash table from id to
+     * row (slots hold row + 1, 0 is empty). The table is derived data: it
+     * records how many rows it covers and is rebuilt from the column when
+     * that doesn't match the archive, e.g. after a crash mid-append.
+     * <p>
+     * {@link #id} needs no lock for committed rows; table lookups and
+     * inserts share this object's monitor, since a rebuild rewrites the
+     * table in place.
+     */
+    private static final class IdColumn {
+        private static final int TABLE_MAGIC = 0x43424B48; // "CBKH"
+        private static final int TABLE_HEADER_BYTES = 16;
+        private static final int MIN_TABLE_SLOTS = 1 << 16;
+
+        private final MappedFile text;
+        private final MappedFile offsets;
+        private final MappedFile table;
+        private int tableSlots;
+        private int entries;
+        private long textLength;
+
+        IdColumn(Path directory) throws IOException {
+            text = new MappedFile(directory.resolve("archive.ids"));
+            offsets = new MappedFile(directory.resolve("archive.ido"));
+            table = new MappedFile(directory.resolve("archive.idh"));
+        }
+
+        /** Takes the committed row count and id text length; anything past them is left over from a failed append. */
+        synchronized void load(int rows, long committedTextLength) throws IOException {
+            textLength = committedTextLength;
+            entries = rows;
+            MappedByteBuffer t = table.ensure(TABLE_HEADER_BYTES);
+            int slots = t.getInt(4);
+            if (t.getInt(0) == TABLE_MAGIC && t.getInt(8) == rows && Integer.bitCount(slots) == 1
+                    && (long) rows * 2 <= slots && table.size() >= TABLE_HEADER_BYTES + 4L * slots) {
+                tableSlots = slots;
+                table.ensure(TABLE_HEADER_BYTES + 4L * slots);
+            } else {
+                rebuild(Math.max(MIN_TABLE_SLOTS, Integer.highestOneBit(Math.max(1, rows * 4 - 1))), rows);
+            }
+        }
+
+        synchronized void add(int row, String id) throws IOException {
+            byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > 0xFFFF) {
+                throw new IOException("Booking id too long for the archive: " + id.length() + " characters");
+            }
+            if (textLength + 2 + bytes.length > Integer.MAX_VALUE) {
+                throw new IOException("Archive id column is full");
+            }
+            int at = (int) textLength;
+            MappedByteBuffer t = text.ensure(at + 2 + bytes.length);
+            t.putShort(at, (short) bytes.length);
+            t.put(at + 2, bytes);
+            offsets.ensure(4L * (row + 1)).putInt(4 * row, at);
+            textLength += 2 + bytes.length;
+            if ((long) (entries + 1) * 2 > tableSlots) {
+                rebuild(tableSlots * 2, row + 1);
+            } else {
+                insert(table.buffer(), bytes, row);
+            }
+            entries = row + 1;
+        }
+
+        /** Forces the column and table to disk and records that the table covers {@code rows}. */
+        synchronized void commit(int rows) {
+            text.buffer().force();
+            offsets.buffer().force();
+            MappedByteBuffer t = table.buffer();
+            t.putInt(8, rows);
+            t.force();
+        }
+
+        long textLength() {
+            return textLength;
+        }
+
+        String id(int row) {
+            int at = offsets.buffer().getInt(4 * row);
+            MappedByteBuffer t = text.buffer();
+            byte[] bytes = new byte[t.getShort(at) & 0xFFFF];
+            t.get(at + 2, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Row below {@code limit} holding this id, or -1. Entries left by an
+         * append that never committed point at or past the committed rows,
+         * so the limit skips them.
+         */
+        synchronized int find(String id, int limit) {
+            byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+            MappedByteBuffer t = table.buffer();
+            int mask = tableSlots - 1;
+            for (int slot = hash(bytes) & mask; ; slot = (slot + 1) & mask) {
+                int entry = t.getInt(TABLE_HEADER_BYTES + 4 * slot);
+                if (entry == 0) {
+                    return -1;
+                }
+                if (entry - 1 < limit && matches(entry - 1, bytes)) {
+                    return entry - 1;
+                }
+            }
+        }
+
+        private boolean matches(int row, byte[] bytes) {
+            int at = offsets.buffer().getInt(4 * row);
+            MappedByteBuffer t = text.buffer();
+            if ((t.getShort(at) & 0xFFFF) != bytes.length) {
+                return false;
+            }
+            for (int i = 0; i < bytes.length; i++) {
+                if (t.get(at + 2 + i) != bytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void insert(MappedByteBuffer t, byte[] bytes, int row) {
+            int mask = tableSlots - 1;
+            int slot = hash(bytes) & mask;
+            while (t.getInt(TABLE_HEADER_BYTES + 4 * slot) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            t.putInt(TABLE_HEADER_BYTES + 4 * slot, row + 1);
+        }
+
+        // Rewrites the table from the column's first rows
+        private void rebuild(int slots, int rows) throws IOException {
+            MappedByteBuffer t = table.ensure(TABLE_HEADER_BYTES + 4L * slots);
+            tableSlots = slots;
+            for (int i = 0; i < slots; i++) {
+                t.putInt(TABLE_HEADER_BYTES + 4 * i, 0);
+            }
+            t.putInt(0, TABLE_MAGIC);
+            t.putInt(4, slots);
+            t.putInt(8, -1); // not valid until the next commit
+            for (int row = 0; row < rows; row++) {
+                insert(t, id(row).getBytes(StandardCharsets.UTF_8), row);
+            }
+        }
+
+        // FNV-1a over the UTF-8 bytes, spread for the low bits used as the slot
+        private static int hash(byte[] bytes) {
+            int h = 0x811C9DC5;
+            for (byte b : bytes) {
+                h = (h ^ (b & 0xFF)) * 0x01000193;
+            }
+            return h ^ (h >>> 16);
+        }
+
+        void close() throws IOException {
+            text.close();
+            offsets.close();
+            table.close();
+        }
+    }
+
+    /** A file mapped whole and remapped larger as it grows; readers use the latest mapping. */
+    private static final class MappedFile {
+        private static final long MIN_MAPPING = 1 << 20;
+
+        private final FileChannel channel;
+        private volatile MappedByteBuffer buffer;
+
+        MappedFile(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(MIN_MAPPING, channel.size()));
+        }
+
+        MappedByteBuffer buffer() {
+            return buffer;
+        }
+
+        long size() {
+            return buffer.capacity();
+        }
+
+        /** The mapping, grown to at least {@code bytes}. */
+        MappedByteBuffer ensure(long bytes) throws IOException {
+            MappedByteBuffer current = buffer;
+            if (bytes <= current.capacity()) {
+                return current;
+            }
+            long grown = Math.min(Integer.MAX_VALUE, Math.max(bytes, 2L * current.capacity()));
+            current = channel.map(FileChannel.MapMode.READ_WRITE, 0, grown);
+            buffer = current;
+            return current;
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+    }
+}
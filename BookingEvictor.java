@@ -0,0 +1,75 @@
+package in.java.main;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the store's in-memory booking list down to live activity by
+ * regularly moving finished bookings older than a window into the
+ * archive. A booking's age is taken from when it was made; trips take
+ * minutes, so that is close enough to when it finished and needs no extra
+ * field. Aggregates are untouched, and evicted bookings stay visible
+ * through the store's booking view.
+ */
+final class BookingEvictor {
+
+    static final long DEFAULT_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    private static final long MIN_PERIOD_MILLIS = 1_000;
+    private static final long MAX_PERIOD_MILLIS = 60_000;
+
+    private final BookingStore store;
+    private final AtomicLong evicted = new AtomicLong();
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "booking-evictor");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile long windowMillis = DEFAULT_WINDOW_MILLIS;
+
+    BookingEvictor(BookingStore store) {
+        this.store = store;
+    }
+
+    /** How long a finished booking stays in memory after it was made. */
+    void setWindowMillis(long windowMillis) {
+        if (windowMillis < 0) {
+            throw new IllegalArgumentException("Negative eviction window: " + windowMillis);
+        }
+        this.windowMillis = windowMillis;
+    }
+
+    /** Checks for evictable bookings a few times per window, at least once a minute. */
+    void start() {
+        long period = Math.max(MIN_PERIOD_MILLIS, Math.min(MAX_PERIOD_MILLIS, windowMillis / 4));
+        ticker.scheduleWithFixedDelay(() -> {
+            try {
+                evictNow();
+            } catch (IOException e) {
+                // The archive refuses further writes after a failure; bookings just stay in memory
+                e.printStackTrace();
+                ticker.shutdown();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    void shutdown() {
+        ticker.shutdownNow();
+    }
+
+    /** Evicts whatever is due right now and returns how many bookings moved. */
+    int evictNow() throws IOException {
+        int moved = store.archiveFinished(System.currentTimeMillis() - windowMillis);
+        evicted.addAndGet(moved);
+        return moved;
+    }
+
+    /** Bookings evicted so far. */
+    long evicted() {
+        return evicted.get();
+    }
+}
@@ -0,0 +1,405 @@
+package in.java.main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Secondary indexes behind the booking table's search, sort and paging.
+ * <p>
+ * Every booking gets a sequence number in the order the store took it
+ * (archived history first, then live bookings as they arrive), and that
+ * order is what "newest" and "oldest" mean. The indexes hold sequence
+ * numbers, not bookings, so evicting a booking to the archive doesn't
+ * touch them. A sequence number resolves to the booking's archive row
+ * once it is archived, and only bookings still in memory keep their id on
+ * the heap here:
+ * <ul>
+ *   <li>a prefix trie of customer names and one each of pickup and
+ *       drop-off places, case-insensitive;</li>
+ *   <li>a list of bookings per cab;</li>
+ *   <li>a sorted map of fares, each holding the bookings at that fare.</li>
+ * </ul>
+ * A page costs a lookup plus a sort of the matches, or a walk down the
+ * fare map that steps over whole fares at a time, never a pass over the
+ * history. Booking fields the indexes use never change after creation, so
+ * only new bookings need indexing.
+ * <p>
+ * Fed by the {@link EventBus}, so a new booking becomes searchable a moment
+ * after it is made, and listens to the store to learn when bookings move
+ * to the archive.
+ */
+final class BookingIndex implements EventBus.Handler, BookingStore.Listener {
+
+    enum Field {
+        CUSTOMER("Customer"), CAB("Cab ID"), ROUTE("Route (from -> to)");
+
+        final String label;
+
+        Field(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    enum Sort {
+        NEWEST("Newest first"), OLDEST("Oldest first"), FARE_HIGH("Fare: high to low"), FARE_LOW("Fare: low to high");
+
+        final String label;
+
+        Sort(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /** One page of results: the booking ids on it and how many matched in all. */
+    static final class Page {
+        final List<String> bookingIds;
+        final int total;
+
+        Page(List<String> bookingIds, int total) {
+            this.bookingIds = bookingIds;
+            this.total = total;
+        }
+    }
+
+    // Sequence number -> archive row (-1 while in memory) and fare
+    private int size;
+    private int[] archiveRow = new int[1024];
+    private int[] farePaise = new int[1024];
+    // Bookings not archived yet, both ways
+    private final Map<Integer, String> liveIds = new HashMap<>();
+    private final Map<String, Integer> liveSeqs = new HashMap<>();
+    private BookingArchive archive;
+    private int archiveRowsSeen;
+    private final Trie customers = new Trie();
+    private final Trie pickups = new Trie();
+    private final Trie dropOffs = new Trie();
+    private final Map<String, IntList> byCab = new HashMap<>();
+    private final NavigableMap<Integer, IntList> byFare = new TreeMap<>();
+    private volatile Runnable changeListener = () -> { };
+    // Consumer thread only
+    private boolean added;
+
+    /** Called on the bus's thread after each batch that indexed new bookings. */
+    void setChangeListener(Runnable listener) {
+        this.changeListener = listener;
+    }
+
+    /** Indexes the archived history; call before the store takes any booking. */
+    synchronized void loadArchive(BookingArchive archive) {
+        this.archive = archive;
+        int rows = archive.size();
+        for (int row = 0; row < rows; row++) {
+            add(row, null, archive.cabId(row), archive.customer(row), archive.from(row), archive.to(row),
+                    archive.farePaise(row));
+        }
+        archiveRowsSeen = rows;
+    }
+
+    /** Swaps the ids of newly archived bookings for their archive rows. */
+    @Override
+    public synchronized void bookingsArchived(int count) {
+        if (archive == null) {
+            return;
+        }
+        int rows = archive.size();
+        for (int row = archiveRowsSeen; row < rows; row++) {
+            Integer seq = liveSeqs.remove(archive.id(row));
+            if (seq != null) {
+                liveIds.remove(seq);
+                archiveRow[seq] = row;
+            }
+        }
+        archiveRowsSeen = rows;
+    }
+
+    @Override
+    public void onEvent(EventBus.Event event, boolean endOfBatch) {
+        if (event.type == EventBus.Type.BOOKING_CREATED) {
+            Booking b = event.booking;
+            synchronized (this) {
+                // Normally still in memory; archived already only under a very short eviction window
+                int row = archive == null ? -1 : archive.rowOf(b.id);
+                add(row, b.id, b.cabId, b.customer, b.from, b.to, Math.round(b.fare * 100));
+            }
+            added = true;
+        }
+        if (endOfBatch && added) {
+            added = false;
+            changeListener.run();
+        }
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    // Either row >= 0 for an archived booking, or id for one in memory
+    private void add(int row, String id, String cabId, String customer, String from, String to, long fare) {
+        int seq = size++;
+        if (seq == farePaise.length) {
+            farePaise = Arrays.copyOf(farePaise, seq * 2);
+            archiveRow = Arrays.copyOf(archiveRow, seq * 2);
+        }
+        archiveRow[seq] = row;
+        if (row < 0) {
+            liveIds.put(seq, id);
+            liveSeqs.put(id, seq);
+        }
+        int paise = (int) Math.max(0, Math.min(Integer.MAX_VALUE, fare));
+        farePaise[seq] = paise;
+        customers.add(key(customer), seq);
+        pickups.add(key(from), seq);
+        dropOffs.add(key(to), seq);
+        byCab.computeIfAbsent(key(cabId), k -> new IntList()).add(seq);
+        byFare.computeIfAbsent(paise, k -> new IntList()).add(seq);
+    }
+
+    private String id(int seq) {
+        int row = archiveRow[seq];
+        return row >= 0 ? archive.id(row) : liveIds.get(seq);
+    }
+
+    private static String key(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // -------------------- QUERIES --------------------
+    /**
+     * The bookings matching {@code text} in {@code field} (all of them when
+     * the text is blank), in {@code sort} order, from {@code offset} on. Cab
+     * ids match exactly; customers and places match by prefix. A route is
+     * "from -> to" with either side optional; a single place matches either
+     * end. Equal fares list newest first.
+     */
+    synchronized Page query(Field field, String text, Sort sort, int offset, int limit) {
+        String query = key(text);
+        int[] matches = query.isEmpty() ? null : matches(field, query);
+        int total = matches == null ? size : matches.length;
+        List<String> page = new ArrayList<>(Math.max(0, Math.min(limit, total - offset)));
+        if (offset >= total || limit <= 0) {
+            return new Page(page, total);
+        }
+        int end = Math.min(total, offset + limit);
+        if (sort == Sort.NEWEST || sort == Sort.OLDEST) {
+            for (int i = offset; i < end; i++) {
+                int index = sort == Sort.NEWEST ? total - 1 - i : i;
+                page.add(id(matches == null ? index : matches[index]));
+            }
+        } else if (matches == null) {
+            fareWalk(sort == Sort.FARE_HIGH, offset, end, page);
+        } else {
+            fareSort(matches, sort == Sort.FARE_HIGH, offset, end, page);
+        }
+        return new Page(page, total);
+    }
+
+    // Sorted sequence numbers of the matches, or null if the query doesn't filter
+    private int[] matches(Field field, String query) {
+        switch (field) {
+            case CAB: {
+                IntList list = byCab.get(query);
+                return list == null ? new int[0] : list.toArray();
+            }
+            case CUSTOMER:
+                return customers.withPrefix(query);
+            default:
+                int arrow = query.indexOf("->");
+                if (arrow < 0) {
+                    return union(pickups.withPrefix(query), dropOffs.withPrefix(query));
+                }
+                String from = query.substring(0, arrow).trim();
+                String to = query.substring(arrow + 2).trim();
+                if (from.isEmpty()) {
+                    return to.isEmpty() ? null : dropOffs.withPrefix(to);
+                }
+                return to.isEmpty() ? pickups.withPrefix(from)
+                        : intersection(pickups.withPrefix(from), dropOffs.withPrefix(to));
+        }
+    }
+
+    // Unfiltered: step through the fare map, skipping whole fares that lie before the page
+    private void fareWalk(boolean highFirst, int offset, int end, List<String> page) {
+        int position = 0;
+        for (IntList atFare : (highFirst ? byFare.descendingMap() : byFare).values()) {
+            if (position + atFare.size <= offset) {
+                position += atFare.size;
+                continue;
+            }
+            for (int i = atFare.size - 1; i >= 0 && position < end; i--, position++) {
+                if (position >= offset) {
+                    page.add(id(atFare.values[i])); // newest first within one fare
+                }
+            }
+            if (position >= end) {
+                return;
+            }
+        }
+    }
+
+    // Filtered: the matches are few enough to sort on (fare, sequence) packed into longs
+    private void fareSort(int[] matches, boolean highFirst, int offset, int end, List<String> page) {
+        long[] keys = new long[matches.length];
+        for (int i = 0; i < matches.length; i++) {
+            int seq = matches[i];
+            // Ascending fare with newest first on ties, or the reverse read from the top
+            keys[i] = (long) farePaise[seq] << 32 | (highFirst ? seq : Integer.MAX_VALUE - seq);
+        }
+        Arrays.sort(keys);
+        for (int i = offset; i < end; i++) {
+            long key = keys[highFirst ? keys.length - 1 - i : i];
+            int low = (int) key;
+            page.add(id(highFirst ? low : Integer.MAX_VALUE - low));
+        }
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        int[] out = new int[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length || j < b.length) {
+            int next = j == b.length || (i < a.length && a[i] <= b[j]) ? a[i] : b[j];
+            if (i < a.length && a[i] == next) {
+                i++;
+            }
+            if (j < b.length && b[j] == next) {
+                j++;
+            }
+            out[n++] = next;
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static int[] intersection(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    // -------------------- STRUCTURES --------------------
+    /** Growable int array; sequence numbers are appended in increasing order. */
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /** Character trie whose nodes hold the bookings for the exact text ending there. */
+    private static final class Trie {
+        private final Node root = new Node();
+
+        private static final class Node {
+            char[] labels = new char[0];
+            Node[] children = new Node[0];
+            IntList bookings;
+
+            Node child(char c) {
+                for (int i = 0; i < labels.length; i++) {
+                    if (labels[i] == c) {
+                        return children[i];
+                    }
+                }
+                return null;
+            }
+
+            Node addChild(char c) {
+                Node child = new Node();
+                labels = Arrays.copyOf(labels, labels.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                labels[labels.length - 1] = c;
+                children[children.length - 1] = child;
+                return child;
+            }
+        }
+
+        void add(String key, int seq) {
+            Node node = root;
+            for (int i = 0; i < key.length(); i++) {
+                Node next = node.child(key.charAt(i));
+                node = next != null ? next : node.addChild(key.charAt(i));
+            }
+            if (node.bookings == null) {
+                node.bookings = new IntList();
+            }
+            node.bookings.add(seq);
+        }
+
+        // Sorted sequence numbers of every key starting with prefix
+        int[] withPrefix(String prefix) {
+            Node node = root;
+            for (int i = 0; i < prefix.length() && node != null; i++) {
+                node = node.child(prefix.charAt(i));
+            }
+            if (node == null) {
+                return new int[0];
+            }
+            List<IntList> lists = new ArrayList<>();
+            collect(node, lists);
+            if (lists.size() == 1) {
+                return lists.get(0).toArray();
+            }
+            int total = 0;
+            for (IntList list : lists) {
+                total += list.size;
+            }
+            int[] out = new int[total];
+            int n = 0;
+            for (IntList list : lists) {
+                System.arraycopy(list.values, 0, out, n, list.size);
+                n += list.size;
+            }
+            Arrays.sort(out); // each booking has one key per trie, so no duplicates
+            return out;
+        }
+
+        private static void collect(Node node, List<IntList> lists) {
+            // Iterative, so a long key can't overflow the stack
+            List<Node> pending = new ArrayList<>();
+            pending.add(node);
+            while (!pending.isEmpty()) {
+                Node next = pending.remove(pending.size() - 1);
+                if (next.bookings != null) {
+                    lists.add(next.bookings);
+                }
+                for (Node child : next.children) {
+                    pending.add(child);
+                }
+            }
+        }
+    }
+}
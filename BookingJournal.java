@@ -0,0 +1,354 @@
+package in.java.main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal for the {@link BookingStore}.
+ * <p>
+ * The journal is an {@link EventBus} consumer: every cab, booking and
+ * status change event is encoded as a checksummed record, and each batch
+ * the bus hands over is written in one go and forced to disk once (group
+ * commit), so fsync cost is shared by all records in the batch. If the
+ * disk falls behind, the bus's bounded ring makes mutating threads wait
+ * instead of buffering without limit. After a write or fsync error the
+ * journal stops recording and tells its failure listener, once.
+ * <p>
+ * Every {@code checkpointEvery} records the journal dumps the store into a
+ * compact snapshot file and truncates the log. Startup loads the snapshot
+ * and replays the log tail on top. Replay goes through the store's normal
+ * insert path, and the store rejects duplicate ids, so a record present in
+ * both the snapshot and the log is simply skipped. Status changes replay
+ * through the store's transition, which refuses to move a booking
+ * backwards, so one the snapshot already reflects is skipped too. A status
+ * record may skip On Trip; replay walks through it.
+ */
+class BookingJournal implements EventBus.Handler {
+
+    private static final int SNAPSHOT_MAGIC = 0x43424B53; // "CBKS"
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final byte CAB_RECORD = 1;
+    private static final byte LEGACY_BOOKING_RECORD = 2; // version 1, no timestamp
+    private static final byte BOOKING_RECORD = 3;
+    private static final byte STATUS_RECORD = 4;
+
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    private final Path logFile;
+    private final Path snapshotFile;
+    private final BookingStore store;
+    private final long checkpointEvery;
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(128);
+    private final DataOutputStream recordOut = new DataOutputStream(recordBytes);
+    private final CRC32 crc = new CRC32();
+
+    private volatile Consumer<IOException> failureListener = e -> { };
+    // Written by the bus's consumer thread only
+    private volatile boolean failed;
+
+    // Only touched by the bus's consumer thread once started
+    private FileChannel log;
+    private int batchRecords;
+    private long recordsSinceCheckpoint;
+
+    BookingJournal(Path directory, BookingStore store, long checkpointEvery) {
+        this.logFile = directory.resolve("journal.log");
+        this.snapshotFile = directory.resolve("snapshot.dat");
+        this.store = store;
+        this.checkpointEvery = checkpointEvery;
+    }
+
+    /**
+     * Loads the last snapshot and replays the log tail into the store.
+     * A torn record at the end of the log (crash mid-write) is cut off.
+     *
+     * @return true if any persisted state was found
+     */
+    boolean recover() throws IOException {
+        Files.createDirectories(logFile.getParent());
+        boolean found = false;
+
+        if (Files.exists(snapshotFile)) {
+            try (DataInputStream in = open(snapshotFile)) {
+                // Records are self-describing, so version 1 snapshots load unchanged
+                int magic = in.readInt();
+                int version = in.readInt();
+                if (magic != SNAPSHOT_MAGIC || version < 1 || version > SNAPSHOT_VERSION) {
+                    throw new IOException("Unrecognised snapshot file: " + snapshotFile);
+                }
+                long records = in.readLong();
+                for (long i = 0; i < records; i++) {
+                    apply(in);
+                }
+            }
+            found = true;
+        }
+
+        if (Files.exists(logFile)) {
+            long validLength = 0;
+            try (DataInputStream in = open(logFile)) {
+                CRC32 crc = new CRC32();
+                while (true) {
+                    int length;
+                    try {
+                        length = in.readInt();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    long checksum = in.readInt() & 0xFFFFFFFFL;
+                    if (length <= 0 || length > WRITE_BUFFER_SIZE - 8) {
+                        break;
+                    }
+                    byte[] payload = new byte[length];
+                    try {
+                        in.readFully(payload);
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    crc.reset();
+                    crc.update(payload, 0, length);
+                    if (crc.getValue() != checksum) {
+                        break;
+                    }
+                    apply(new DataInputStream(new ByteArrayInputStream(payload)));
+                    validLength += 8 + length;
+                    found = true;
+                }
+            } catch (EOFException e) {
+                // torn header at the tail; everything before validLength is good
+            }
+            try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.WRITE)) {
+                if (channel.size() > validLength) {
+                    channel.truncate(validLength);
+                }
+            }
+        }
+        return found;
+    }
+
+    /** Called on the bus's thread when a write fails; nothing is recorded after that. */
+    void setFailureListener(Consumer<IOException> listener) {
+        this.failureListener = listener;
+    }
+
+    /** True once a write failed and changes are no longer saved. */
+    boolean failed() {
+        return failed;
+    }
+
+    /** Opens the log for appending and subscribes to the bus; writing happens on its consumer thread. */
+    void start(EventBus bus) throws IOException {
+        log = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        bus.subscribe("journal", this);
+    }
+
+    // -------------------- CONSUMER THREAD --------------------
+    @Override
+    public void onEvent(EventBus.Event event, boolean endOfBatch) {
+        if (failed) {
+            return; // keep consuming so producers aren't held up by a dead disk
+        }
+        try {
+            switch (event.type) {
+                case CAB_ADDED:
+                    writeCab(recordOut, event.cab);
+                    break;
+                case BOOKING_CREATED:
+                    writeBooking(recordOut, event.booking);
+                    break;
+                case STATUS_CHANGED:
+                    // The current status, not the event's: it never goes backwards, so replay can't either
+                    writeStatus(recordOut, event.booking.id, event.booking.status);
+                    break;
+                default:
+                    break;
+            }
+            append(recordBytes.toByteArray());
+            recordBytes.reset();
+            batchRecords++;
+            if (endOfBatch) {
+                commit();
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /** Flushes the last batch and writes a final snapshot. */
+    @Override
+    public void onShutdown() {
+        try {
+            if (!failed) {
+                commit();
+                if (recordsSinceCheckpoint > 0) {
+                    checkpoint();
+                }
+            }
+            log.close();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void fail(IOException e) {
+        boolean first = !failed;
+        failed = true;
+        writeBuffer.clear();
+        recordBytes.reset();
+        e.printStackTrace();
+        if (first) {
+            failureListener.accept(e);
+        }
+    }
+
+    private void append(byte[] record) throws IOException {
+        if (writeBuffer.remaining() < 8 + record.length) {
+            drainBuffer();
+        }
+        if (8 + record.length > writeBuffer.capacity()) {
+            throw new IOException("Journal record too large: " + record.length + " bytes");
+        }
+        crc.reset();
+        crc.update(record, 0, record.length);
+        writeBuffer.putInt(record.length);
+        writeBuffer.putInt((int) crc.getValue());
+        writeBuffer.put(record);
+    }
+
+    // One fsync for the whole batch
+    private void commit() throws IOException {
+        if (batchRecords == 0) {
+            return;
+        }
+        drainBuffer();
+        log.force(false);
+        recordsSinceCheckpoint += batchRecords;
+        batchRecords = 0;
+        if (recordsSinceCheckpoint >= checkpointEvery) {
+            checkpoint();
+        }
+    }
+
+    private void drainBuffer() throws IOException {
+        writeBuffer.flip();
+        while (writeBuffer.hasRemaining()) {
+            log.write(writeBuffer);
+        }
+        writeBuffer.clear();
+    }
+
+    /**
+     * Writes a snapshot of what is in memory and empties the log. Moving
+     * finished bookings to the archive is left to {@link BookingEvictor}
+     * and its window. Records still queued are written to the fresh log
+     * afterwards; replay skips the ones the snapshot or archive already holds.
+     */
+    private void checkpoint() throws IOException {
+        AppendOnlyList<Booking> hot = store.readConsistent(store::bookings);
+        int[] cut = {store.cabs().size(), hot.size()};
+        Path temp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try (OutputStream file = Files.newOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong((long) cut[0] + cut[1]);
+            for (int i = 0; i < cut[0]; i++) {
+                writeCab(out, store.cabs().get(i));
+            }
+            for (int i = 0; i < cut[1]; i++) {
+                writeBooking(out, hot.get(i));
+            }
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.truncate(0);
+        log.force(true);
+        recordsSinceCheckpoint = 0;
+    }
+
+    // -------------------- RECORD FORMAT --------------------
+    private static DataInputStream open(Path file) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        return new DataInputStream(new BufferedInputStream(in, 1 << 16));
+    }
+
+    private void apply(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case CAB_RECORD:
+                store.addCab(new Cab(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readDouble()));
+                break;
+            case LEGACY_BOOKING_RECORD:
+            case BOOKING_RECORD:
+                Booking b = new Booking(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(),
+                        in.readDouble());
+                b.status = BookingStatus.parse(in.readUTF());
+                b.createdAt = type == BOOKING_RECORD ? in.readLong() : 0;
+                store.addBooking(b);
+                break;
+            case STATUS_RECORD:
+                replayStatus(in.readUTF(), BookingStatus.parse(in.readUTF()));
+                break;
+            default:
+                throw new IOException("Unknown journal record type: " + type);
+        }
+    }
+
+    // A record holds the status as of writing, so a trip that started and ended
+    // before the journal caught up is logged straight from Assigned to Completed
+    private void replayStatus(String bookingId, BookingStatus status) {
+        Booking booking = store.findBooking(bookingId);
+        if (booking != null && booking.status == BookingStatus.ASSIGNED && status == BookingStatus.COMPLETED) {
+            store.transition(bookingId, BookingStatus.ON_TRIP);
+        }
+        store.transition(bookingId, status);
+    }
+
+    private static void writeStatus(DataOutputStream out, String bookingId, BookingStatus status)
+            throws IOException {
+        out.writeByte(STATUS_RECORD);
+        out.writeUTF(bookingId);
+        out.writeUTF(status.label);
+    }
+
+    private static void writeCab(DataOutputStream out, Cab cab) throws IOException {
+        out.writeByte(CAB_RECORD);
+        out.writeUTF(cab.id);
+        out.writeUTF(cab.driver);
+        out.writeUTF(cab.location);
+        out.writeUTF(cab.type);
+        out.writeDouble(cab.fare);
+    }
+
+    private static void writeBooking(DataOutputStream out, Booking booking) throws IOException {
+        out.writeByte(BOOKING_RECORD);
+        out.writeUTF(booking.id);
+        out.writeUTF(booking.cabId);
+        out.writeUTF(booking.customer);
+        out.writeUTF(booking.from);
+        out.writeUTF(booking.to);
+        out.writeDouble(booking.fare);
+        out.writeUTF(booking.status.label);
+        out.writeLong(booking.createdAt);
+    }
+}
@@ -0,0 +1,65 @@
+package in.java.main;
+
+/**
+ * Lifecycle of a booking:
+ * <pre>
+ *   Assigned -> On Trip -> Completed
+ *       \_______________> Cancelled
+ * </pre>
+ * A booking is made once a cab is assigned; ride requests still waiting
+ * in the {@link BatchDispatcher} aren't bookings yet. A trip can be
+ * cancelled until it starts; Completed and Cancelled are final. Only
+ * active bookings hold their cab.
+ */
+enum BookingStatus {
+    ASSIGNED("Assigned"),
+    ON_TRIP("On Trip"),
+    COMPLETED("Completed"),
+    CANCELLED("Cancelled");
+
+    /** Name shown in tables and written to files. */
+    final String label;
+
+    BookingStatus(String label) {
+        this.label = label;
+    }
+
+    boolean isActive() {
+        return this != COMPLETED && this != CANCELLED;
+    }
+
+    boolean canMoveTo(BookingStatus next) {
+        switch (this) {
+            case ASSIGNED:
+                return next == ON_TRIP || next == CANCELLED;
+            case ON_TRIP:
+                return next == COMPLETED;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Status for a label or constant name, ignoring case. "Confirmed", what
+     * every booking was set to before the lifecycle existed, means Assigned.
+     *
+     * @throws IllegalArgumentException if the text names no status
+     */
+    static BookingStatus parse(String text) {
+        String value = text.trim();
+        for (BookingStatus status : values()) {
+            if (status.label.equalsIgnoreCase(value) || status.name().equalsIgnoreCase(value)) {
+                return status;
+            }
+        }
+        if (value.equalsIgnoreCase("Confirmed")) {
+            return ASSIGNED;
+        }
+        throw new IllegalArgumentException("Unknown booking status: " + text);
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
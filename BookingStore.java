@@ -0,0 +1,448 @@
+package in.java.main;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Thread-safe home of all cabs and bookings, plus the availability index
+ * and running aggregates derived from them.
+ * <p>
+ * Any thread may add cabs or book them. Booking is atomic: a cab is only
+ * booked if it has no active booking at that instant, so two concurrent
+ * requests for the same cab can never both succeed. Bookings then move
+ * through their {@link BookingStatus} lifecycle with {@link #transition},
+ * an O(1) compare-and-set that frees the cab when the trip ends. Mutations run
+ * concurrently with each other; {@link #readConsistent} briefly excludes
+ * them so the dashboard sees counters that agree with one another.
+ * <p>
+ * Cab ids and booking ids are primary keys: lookups by id are O(1) hash
+ * probes and inserting an id that already exists is rejected.
+ * <p>
+ * With a {@link BookingArchive} attached, finished bookings can be rolled
+ * out of the in-memory list into the archive, e.g. by a
+ * {@link BookingEvictor} once they are old enough. They stay visible
+ * through {@link #findBooking} and {@link #bookingView}, and keep counting
+ * towards the aggregates.
+ */
+class BookingStore {
+
+    enum BookResult { BOOKED, NO_SUCH_CAB, CAB_BUSY, DUPLICATE_ID }
+
+    enum TransitionResult { MOVED, NO_SUCH_BOOKING, NOT_ALLOWED }
+
+    /** Notified after a mutation, on the thread that made it. */
+    interface Listener {
+        default void cabAdded(Cab cab) { }
+        default void bookingAdded(Booking booking) { }
+        default void statusChanged(Booking booking, BookingStatus previous, BookingStatus next) { }
+        default void bookingsArchived(int count) { }
+    }
+
+    /** Prices a new trip on a cab. */
+    interface Pricing {
+        double fare(Cab cab, String from, String to);
+    }
+
+    /** The in-memory booking list together with the number of archived rows logically ahead of it. */
+    static final class BookingView {
+        final int archivedRows;
+        final AppendOnlyList<Booking> hot;
+
+        BookingView(int archivedRows, AppendOnlyList<Booking> hot) {
+            this.archivedRows = archivedRows;
+            this.hot = hot;
+        }
+    }
+
+    private final AppendOnlyList<Cab> cabs = new AppendOnlyList<>();
+    private volatile BookingView bookings = new BookingView(0, new AppendOnlyList<>());
+    private volatile BookingArchive archive;
+    private final Map<String, Cab> cabsById = new ConcurrentHashMap<>();
+    private final Map<String, Booking> bookingsById = new ConcurrentHashMap<>();
+    private final AvailabilityIndex availability = new AvailabilityIndex();
+    private final DashboardAggregates aggregates = new DashboardAggregates();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile Pricing pricing = (cab, from, to) -> cab.fare;
+
+    // Mutations share the read side so they never block each other; the
+    // write side is only taken to read all counters at one instant
+    private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+
+    void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /** Replaces the flat cab fare with a pricing engine for new trips. */
+    void setPricing(Pricing pricing) {
+        this.pricing = pricing;
+    }
+
+    /** What a new trip on this cab would cost right now. */
+    double quote(Cab cab, String from, String to) {
+        return pricing.fare(cab, from, to);
+    }
+
+    /** Adds a cab; returns false and changes nothing if its id is already taken. */
+    boolean addCab(Cab cab) {
+        snapshotLock.readLock().lock();
+        try {
+            if (!insertCab(cab)) {
+                return false;
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+        for (Listener l : listeners) {
+            l.cabAdded(cab);
+        }
+        return true;
+    }
+
+    /**
+     * Adds a batch of cabs under a single lock acquisition and returns the
+     * ones rejected because their id was already taken.
+     */
+    List<Cab> addCabs(List<Cab> batch) {
+        List<Cab> added = new ArrayList<>(batch.size());
+        List<Cab> rejected = new ArrayList<>();
+        snapshotLock.readLock().lock();
+        try {
+            for (Cab cab : batch) {
+                (insertCab(cab) ? added : rejected).add(cab);
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+        for (Cab cab : added) {
+            for (Listener l : listeners) {
+                l.cabAdded(cab);
+            }
+        }
+        return rejected;
+    }
+
+    private boolean insertCab(Cab cab) {
+        if (cabsById.putIfAbsent(cab.id, cab) != null) {
+            return false;
+        }
+        cabs.add(cab);
+        availability.registerCab(cab.id);
+        aggregates.onCabAdded(cab.type);
+        return true;
+    }
+
+    /**
+     * Books the cab for a new trip at the quoted fare, but only if the cab
+     * exists and is free right now.
+     */
+    BookResult bookIfFree(String bookingId, String cabId, String customer, String from, String to) {
+        Booking booking;
+        snapshotLock.readLock().lock();
+        try {
+            Cab cab = cabsById.get(cabId);
+            if (cab == null) {
+                return BookResult.NO_SUCH_CAB;
+            }
+            booking = new Booking(bookingId, cabId, customer, from, to, quote(cab, from, to));
+            // Claim the id first so a busy cab is the only reason left to back out
+            if (isArchived(bookingId) || bookingsById.putIfAbsent(bookingId, booking) != null) {
+                return BookResult.DUPLICATE_ID;
+            }
+            if (!availability.tryReserve(cabId)) {
+                bookingsById.remove(bookingId, booking);
+                return BookResult.CAB_BUSY;
+            }
+            bookings.hot.add(booking);
+            aggregates.onBookingAdded(booking.fare, booking.status);
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+        announce(booking);
+        return BookResult.BOOKED;
+    }
+
+    /**
+     * Books a batch of new trips all-or-nothing. Each booking names its cab
+     * and carries its fare. Either every cab was free and every booking is
+     * committed (all entries BOOKED), or nothing changed: then the entries
+     * that forced the rollback carry the reason and the rest are null.
+     * Consistent readers see the whole batch or none of it.
+     */
+    BookResult[] bookAllIfFree(List<Booking> batch) {
+        BookResult[] results = new BookResult[batch.size()];
+        boolean conflict = false;
+        snapshotLock.readLock().lock();
+        try {
+            int claimed = 0;
+            int reserved = 0;
+            for (; claimed < batch.size(); claimed++) {
+                Booking booking = batch.get(claimed);
+                if (!cabsById.containsKey(booking.cabId)) {
+                    results[claimed] = BookResult.NO_SUCH_CAB;
+                    conflict = true;
+                    break;
+                }
+                if (isArchived(booking.id) || bookingsById.putIfAbsent(booking.id, booking) != null) {
+                    results[claimed] = BookResult.DUPLICATE_ID;
+                    conflict = true;
+                    break;
+                }
+            }
+            if (!conflict) {
+                for (; reserved < batch.size(); reserved++) {
+                    if (!availability.tryReserve(batch.get(reserved).cabId)) {
+                        results[reserved] = BookResult.CAB_BUSY;
+                        conflict = true;
+                        break;
+                    }
+                }
+            }
+            if (conflict) {
+                for (int i = 0; i < reserved; i++) {
+                    availability.bookingClosed(batch.get(i).cabId);
+                }
+                for (int i = 0; i < claimed; i++) {
+                    bookingsById.remove(batch.get(i).id, batch.get(i));
+                }
+                return results;
+            }
+            for (Booking booking : batch) {
+                bookings.hot.add(booking);
+                aggregates.onBookingAdded(booking.fare, booking.status);
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+        Arrays.fill(results, BookResult.BOOKED);
+        for (Booking booking : batch) {
+            announce(booking);
+        }
+        return results;
+    }
+
+    /**
+     * Inserts an existing booking as-is, e.g. seed data or an import.
+     * Returns false and changes nothing if its id is already taken.
+     */
+    boolean addBooking(Booking booking) {
+        snapshotLock.readLock().lock();
+        try {
+            if (!insertBooking(booking)) {
+                return false;
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+        announce(booking);
+        return true;
+    }
+
+    /**
+     * Inserts a batch of existing bookings under a single lock acquisition
+     * and returns the ones rejected because their id was already taken.
+     */
+    List<Booking> addBookings(List<Booking> batch) {
+        List<Booking> added = new ArrayList<>(batch.size());
+        List<Booking> rejected = new ArrayList<>();
+        snapshotLock.readLock().lock();
+        try {
+            for (Booking booking : batch) {
+                (insertBooking(booking) ? added : rejected).add(booking);
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+        for (Booking booking : added) {
+            announce(booking);
+        }
+        return rejected;
+    }
+
+    private boolean insertBooking(Booking booking) {
+        if (isArchived(booking.id) || bookingsById.putIfAbsent(booking.id, booking) != null) {
+            return false;
+        }
+        bookings.hot.add(booking);
+        if (booking.isActive()) {
+            availability.bookingOpened(booking.cabId);
+        }
+        aggregates.onBookingAdded(booking.fare, booking.status);
+        return true;
+    }
+
+    // Listeners hear of a booking before any change to it, so they see it in its inserted status first
+    private void announce(Booking booking) {
+        for (Listener l : listeners) {
+            l.bookingAdded(booking);
+        }
+        booking.announced = true;
+    }
+
+    /**
+     * Moves a booking to {@code next} if its lifecycle allows it from the
+     * status it has right now. Ending a trip frees the cab. Archived
+     * bookings are final and can't move; a booking still being inserted
+     * isn't found yet.
+     */
+    TransitionResult transition(String bookingId, BookingStatus next) {
+        Booking booking;
+        BookingStatus previous;
+        snapshotLock.readLock().lock();
+        try {
+            booking = bookingsById.get(bookingId);
+            if (booking == null || !booking.announced) {
+                return isArchived(bookingId) ? TransitionResult.NOT_ALLOWED : TransitionResult.NO_SUCH_BOOKING;
+            }
+            do {
+                previous = booking.status;
+                if (!previous.canMoveTo(next)) {
+                    return TransitionResult.NOT_ALLOWED;
+                }
+            } while (!booking.moveStatus(previous, next));
+            if (previous.isActive() && !next.isActive()) {
+                availability.bookingClosed(booking.cabId);
+            }
+            aggregates.onStatusChanged(booking.fare, previous, next);
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+        for (Listener l : listeners) {
+            l.statusChanged(booking, previous, next);
+        }
+        return TransitionResult.MOVED;
+    }
+
+    /** Returns the cab with this id, or null. */
+    Cab findCab(String cabId) {
+        return cabsById.get(cabId);
+    }
+
+    /** Returns the booking with this id, or null. Archived bookings come back as fresh copies. */
+    Booking findBooking(String bookingId) {
+        Booking booking = bookingsById.get(bookingId);
+        if (booking == null && archive != null) {
+            int row = archive.rowOf(bookingId);
+            if (row >= 0) {
+                booking = archive.materialize(row);
+            }
+        }
+        return booking;
+    }
+
+    private boolean isArchived(String bookingId) {
+        return archive != null && archive.rowOf(bookingId) >= 0;
+    }
+
+    /**
+     * Attaches the archive and counts its bookings into the aggregates.
+     * Must be called before any booking is added.
+     */
+    void attachArchive(BookingArchive archive) {
+        snapshotLock.writeLock().lock();
+        try {
+            if (bookings.hot.size() > 0) {
+                throw new IllegalStateException("Attach the archive before adding bookings");
+            }
+            int rows = archive.size();
+            for (int row = 0; row < rows; row++) {
+                aggregates.onBookingAdded(archive.fare(row), archive.status(row));
+            }
+            this.archive = archive;
+            bookings = new BookingView(rows, bookings.hot);
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Moves finished bookings created before {@code createdBefore} (epoch
+     * millis) from memory into the archive and returns how many moved.
+     * Mutations carry on while the archive is written and only wait for the
+     * in-memory list to be swapped. If the archive write fails nothing is
+     * moved.
+     */
+    synchronized int archiveFinished(long createdBefore) throws IOException {
+        BookingArchive archive = this.archive;
+        if (archive == null) {
+            return 0;
+        }
+        // Completed and Cancelled are final, so these stay as they are while the archive is written
+        List<Booking> finished = new ArrayList<>();
+        for (Booking b : bookings.hot) {
+            if (!b.isActive() && b.createdAt < createdBefore) {
+                finished.add(b);
+            }
+        }
+        if (finished.isEmpty()) {
+            return 0;
+        }
+        archive.append(finished);
+        snapshotLock.writeLock().lock();
+        try {
+            // finished is a subsequence of the hot list, so one merge pass drops exactly those
+            AppendOnlyList<Booking> remaining = new AppendOnlyList<>();
+            int next = 0;
+            for (Booking b : bookings.hot) {
+                if (next < finished.size() && finished.get(next) == b) {
+                    next++;
+                } else {
+                    remaining.add(b);
+                }
+            }
+            for (Booking b : finished) {
+                bookingsById.remove(b.id);
+            }
+            bookings = new BookingView(archive.size(), remaining);
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+        for (Listener l : listeners) {
+            l.bookingsArchived(finished.size());
+        }
+        return finished.size();
+    }
+
+    /** Runs the reader while no mutation is in flight. Keep it short. */
+    <T> T readConsistent(Supplier<T> reader) {
+        snapshotLock.writeLock().lock();
+        try {
+            return reader.get();
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    AppendOnlyList<Cab> cabs() {
+        return cabs;
+    }
+
+    /** Bookings still held in memory. */
+    AppendOnlyList<Booking> bookings() {
+        return bookings.hot;
+    }
+
+    BookingView bookingView() {
+        return bookings;
+    }
+
+    /** The attached archive, or null. */
+    BookingArchive archive() {
+        return archive;
+    }
+
+    AvailabilityIndex availability() {
+        return availability;
+    }
+
+    DashboardAggregates aggregates() {
+        return aggregates;
+    }
+}
@@ -0,0 +1,23 @@
+package in.java.main;
+
+class Cab {
+    String id, driver, location, type;
+    double fare;
+    // Current position; NaN when the location text couldn't be resolved
+    volatile double lat, lon;
+
+    Cab(String id, String driver, String location, String type, double fare) {
+        this.id = id;
+        this.driver = driver;
+        this.location = Interner.canonical(location);
+        this.type = Interner.canonical(type);
+        this.fare = fare;
+        double[] position = Places.resolve(location);
+        this.lat = position != null ? position[0] : Double.NaN;
+        this.lon = position != null ? position[1] : Double.NaN;
+    }
+
+    boolean hasPosition() {
+        return !Double.isNaN(lat) && !Double.isNaN(lon);
+    }
+}
@@ -1,31 +1,63 @@
 package in.java.main;
 import javax.swing.*;
 import javax.swing.border.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.table.AbstractTableModel;
 import javax.swing.table.JTableHeader;
 import javax.swing.table.TableCellRenderer;
+import javax.swing.table.TableModel;
 
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.*;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
-import java.util.Random;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class CabBookingSystemEnhanced extends JFrame {
 
-    private ArrayList<Cab> cabs = new ArrayList<>();
-    private ArrayList<Booking> bookings = new ArrayList<>();
+    private final BookingStore store = new BookingStore();
+    private final AvailabilityIndex availability = store.availability();
+    private final DashboardAggregates aggregates = store.aggregates();
+    private final BookingJournal journal = new BookingJournal(Paths.get("data"), store, 250_000);
+    private final FareEngine fareEngine = new FareEngine();
+    private final DispatchEngine dispatcher = new DispatchEngine(store);
+    private final BatchDispatcher batchDispatcher = new BatchDispatcher(store, dispatcher, 50);
+    private final SurgeTracker surgeTracker = new SurgeTracker(store, 60);
+    private final AnalyticsEngine analytics = new AnalyticsEngine();
+    private final BookingIndex bookingIndex = new BookingIndex();
+    private final EventBus eventBus = new EventBus(EventBus.DEFAULT_CAPACITY);
+    private LoadSimulator simulator;
+    private final BookingApi api = new BookingApi(store, batchDispatcher, surgeTracker);
+    private final PositionIngest positions = new PositionIngest(store, dispatcher);
+    private final BookingEvictor evictor = new BookingEvictor(store);
     private JTable cabTable, bookingTable;
-    private DefaultTableModel cabModel, bookingModel;
+    private final CabTableModel cabModel = new CabTableModel();
+    private final BookingTableModel bookingModel = new BookingTableModel();
     
     // Dashboard components
-    private JLabel totalCabsLabel, activeBookingsLabel, availableCabsLabel, revenueLabel;
+    private JLabel totalCabsLabel, activeBookingsLabel, availableCabsLabel, revenueLabel, dispatchLabel, surgeLabel;
+    // Shown in the header once changes stop being saved
+    private final JLabel journalWarningLabel = new JLabel("", SwingConstants.CENTER);
+    private final Map<String, JLabel> analyticsValues = new HashMap<>();
     private JPanel statsPanel;
     private JComboBox<String> timeRangeCombo;
-    private Timer dashboardTimer;
+    private SwingWorker<Long, Void> exportWorker;
+    private SwingWorker<CsvImporter.Result, Void> importWorker;
+    private SwingWorker<ReportEngine.Report, Void> reportWorker;
+    private final ReportEngine reportEngine = new ReportEngine(store, ForkJoinPool.commonPool());
+    private final DashboardRefresher dashboardRefresher =
+            new DashboardRefresher(this::captureDashboard, this::applyDashboard);
 
     // Enhanced Color Palette
     private final Color PRIMARY_COLOR = new Color(0x142C14);
@@ -54,8 +86,32 @@ public class CabBookingSystemEnhanced extends JFrame {
             e.printStackTrace();
         }
 
-        // Initialize sample data
-        initializeSampleData();
+        // Tables and the dashboard follow the store through the event bus, one
+        // repaint per batch of events; cab rows repaint themselves when their
+        // availability flips
+        availability.addChangeListener(cabModel::cabAvailabilityChanged);
+        store.setPricing(fareEngine);
+        fareEngine.setSurgeSource(surgeTracker);
+        batchDispatcher.setSurgeTracker(surgeTracker);
+        dispatcher.setSurgeTracker(surgeTracker);
+        store.addListener(eventBus);
+        eventBus.subscribe("analytics", analytics);
+        eventBus.subscribe("index", bookingIndex);
+        store.addListener(bookingIndex);
+        eventBus.subscribe("ui", new UiUpdater());
+        // The booking page is fetched again once the index has taken in new bookings
+        bookingIndex.setChangeListener(bookingModel::bookingsChanged);
+        store.addListener(new BookingStore.Listener() {
+            @Override
+            public void bookingsArchived(int count) {
+                bookingModel.bookingsChanged();
+            }
+        });
+
+        // Restore persisted cabs/bookings, seeding sample data only on first run
+        initializePersistence();
+        batchDispatcher.start();
+        surgeTracker.start();
 
         // -------------------- ENHANCED HEADER PANEL --------------------
         JPanel headerPanel = createHeaderPanel();
@@ -84,26 +140,68 @@ public class CabBookingSystemEnhanced extends JFrame {
         JPanel exportPanel = createExportPanel();
         tabs.add("💾 Export Data", exportPanel);
 
+        // Import Panel
+        JPanel importPanel = createImportPanel();
+        tabs.add("📥 Import Data", importPanel);
+
+        // Reports Panel
+        JPanel reportsPanel = createReportsPanel();
+        tabs.add("📑 Reports", reportsPanel);
+
         add(tabs, BorderLayout.CENTER);
 
         // Initialize dashboard timer for real-time updates
         initializeDashboardTimer();
     }
 
+    private void initializePersistence() {
+        boolean recovered = false;
+        try {
+            // Completed trips live in the archive; attach it before replaying the journal
+            BookingArchive archive = BookingArchive.open(Paths.get("data"));
+            store.attachArchive(archive);
+            analytics.loadArchive(archive);
+            bookingIndex.loadArchive(archive);
+            recovered = archive.size() > 0;
+        } catch (IOException e) {
+            e.printStackTrace();
+            showErrorDialog("Could not open the booking archive: " + e.getMessage()
+                    + "\nCompleted trips will stay in memory.");
+        }
+        journal.setFailureListener(e -> SwingUtilities.invokeLater(() ->
+                showJournalFailure("Could not write the data journal: " + e.getMessage())));
+        try {
+            recovered |= journal.recover();
+            journal.start(eventBus);
+        } catch (IOException e) {
+            e.printStackTrace();
+            showJournalFailure("Could not open the data journal: " + e.getMessage());
+        }
+        if (!recovered) {
+            initializeSampleData();
+        }
+    }
+
+    // The dialog says it once; the header banner stays up for the rest of the session
+    private void showJournalFailure(String message) {
+        journalWarningLabel.setText("⚠ Changes are not being saved: " + message);
+        journalWarningLabel.setVisible(true);
+        showErrorDialog(message + "\nChanges in this session will not be saved.");
+    }
+
     private void initializeSampleData() {
         // Add some sample cabs
-        cabs.add(new Cab("CAB001", "John Doe", "Downtown", "Sedan", 250.0));
-        cabs.add(new Cab("CAB002", "Jane Smith", "Airport", "SUV", 350.0));
-        cabs.add(new Cab("CAB003", "Mike Johnson", "Mall", "Hatchback", 200.0));
+        store.addCab(new Cab("CAB001", "John Doe", "Downtown", "Sedan", 250.0));
+        store.addCab(new Cab("CAB002", "Jane Smith", "Airport", "SUV", 350.0));
+        store.addCab(new Cab("CAB003", "Mike Johnson", "Mall", "Hatchback", 200.0));
         
         // Add some sample bookings
-        bookings.add(new Booking("B001", "CAB001", "Alice Brown", "Downtown", "Airport", 250.0));
-        bookings.add(new Booking("B002", "CAB002", "Bob Wilson", "Airport", "City Center", 350.0));
+        store.addBooking(new Booking("B001", "CAB001", "Alice Brown", "Downtown", "Airport", 250.0));
+        store.addBooking(new Booking("B002", "CAB002", "Bob Wilson", "Airport", "City Center", 350.0));
     }
 
     private void initializeDashboardTimer() {
-        dashboardTimer = new Timer(5000, e -> updateDashboard()); // Update every 5 seconds
-        dashboardTimer.start();
+        dashboardRefresher.start(5000); // Update every 5 seconds, off the EDT
     }
 
     private JPanel createHeaderPanel() {
@@ -138,6 +236,15 @@ public class CabBookingSystemEnhanced extends JFrame {
         );
         info.setFont(new Font("Segoe UI", Font.PLAIN, 14));
 
+        // Hidden until the journal fails, possibly before the header exists
+        journalWarningLabel.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        journalWarningLabel.setOpaque(true);
+        journalWarningLabel.setBackground(DANGER_COLOR);
+        journalWarningLabel.setForeground(Color.WHITE);
+        journalWarningLabel.setBorder(BorderFactory.createEmptyBorder(6, 6, 6, 6));
+        journalWarningLabel.setVisible(!journalWarningLabel.getText().isEmpty());
+
+        headerPanel.add(journalWarningLabel, BorderLayout.NORTH);
         headerPanel.add(title, BorderLayout.CENTER);
         headerPanel.add(clockLabel, BorderLayout.EAST);
         headerPanel.add(info, BorderLayout.SOUTH);
@@ -191,6 +298,8 @@ public class CabBookingSystemEnhanced extends JFrame {
         activeBookingsLabel = createDashboardStatCard("Active Bookings", "0", ACCENT_COLOR);
         availableCabsLabel = createDashboardStatCard("Available Cabs", "0", SUCCESS_COLOR);
         revenueLabel = createDashboardStatCard("Revenue", "₹0", WARNING_COLOR);
+        dispatchLabel = createDashboardStatCard("Dispatch", "0.0/s", ACCENT_COLOR);
+        surgeLabel = createDashboardStatCard("Surge", "1.0x", WARNING_COLOR);
 
         statsPanel.add(totalCabsLabel);
         statsPanel.add(Box.createRigidArea(new Dimension(0, 10)));
@@ -199,6 +308,10 @@ public class CabBookingSystemEnhanced extends JFrame {
         statsPanel.add(availableCabsLabel);
         statsPanel.add(Box.createRigidArea(new Dimension(0, 10)));
         statsPanel.add(revenueLabel);
+        statsPanel.add(Box.createRigidArea(new Dimension(0, 10)));
+        statsPanel.add(dispatchLabel);
+        statsPanel.add(Box.createRigidArea(new Dimension(0, 10)));
+        statsPanel.add(surgeLabel);
 
         // Quick actions
         statsPanel.add(Box.createRigidArea(new Dimension(0, 20)));
@@ -237,22 +350,30 @@ public class CabBookingSystemEnhanced extends JFrame {
     private String getStatDetails(String title) {
         switch (title) {
             case "Total Cabs":
-                return "Sedan: " + cabs.stream().filter(c -> c.type.equals("Sedan")).count() + 
-                       "\nSUV: " + cabs.stream().filter(c -> c.type.equals("SUV")).count() +
-                       "\nHatchback: " + cabs.stream().filter(c -> c.type.equals("Hatchback")).count();
+                return "Sedan: " + aggregates.cabsOfType("Sedan") + 
+                       "\nSUV: " + aggregates.cabsOfType("SUV") +
+                       "\nHatchback: " + aggregates.cabsOfType("Hatchback");
             case "Active Bookings":
-                return "Confirmed: " + bookings.size() + 
-                       "\nCompleted: " + bookings.stream().filter(b -> b.status != null && b.status.equals("Completed")).count();
+                return "Active: " + aggregates.activeBookings() +
+                       "\n" + BookingStatus.ASSIGNED.label + ": " + aggregates.assignedBookings() +
+                       "\n" + BookingStatus.ON_TRIP.label + ": " + aggregates.onTripBookings() +
+                       "\n" + BookingStatus.COMPLETED.label + ": " + aggregates.completedBookings() +
+                       "\n" + BookingStatus.CANCELLED.label + ": " + aggregates.cancelledBookings();
             case "Available Cabs":
-                long available = cabs.stream().filter(c -> 
-                    bookings.stream().noneMatch(b -> b.cabId.equals(c.id) && 
-                    (b.status == null || !b.status.equals("Completed")))).count();
-                return "Available: " + available + "\nOn Trip: " + (cabs.size() - available);
+                long available = availability.availableCount();
+                return "Available: " + available + "\nOn Trip: " + (aggregates.totalCabs() - available);
             case "Revenue":
-                double totalRevenue = bookings.stream().mapToDouble(b -> b.fare).sum();
-                return "Today: ₹" + totalRevenue + 
-                       "\nThis Week: ₹" + (totalRevenue * 7) +
-                       "\nThis Month: ₹" + (totalRevenue * 30);
+                BookingArchive archive = store.archive();
+                return String.format("Today: ₹%.2f\nThis Week: ₹%.2f\nAll Time: ₹%.2f",
+                        analytics.revenueDaysAgo(0), analytics.revenueWeeksAgo(0), aggregates.totalRevenue()) +
+                       (archive == null ? "" : String.format("\nArchived Trips: %d (₹%.2f)",
+                               archive.size(), archive.revenuePaise() / 100.0));
+            case "Dispatch":
+                return String.format("Throughput: %.1f bookings/s\np99 Latency: %.1f ms\nAuto-assigned: %d\nWaiting: %d",
+                        batchDispatcher.throughputPerSecond(), batchDispatcher.p99LatencyMillis(),
+                        batchDispatcher.totalAssignments(), batchDispatcher.pending());
+            case "Surge":
+                return surgeByZone(surgeTracker.latest());
             default:
                 return "No details available";
         }
@@ -271,8 +392,8 @@ public class CabBookingSystemEnhanced extends JFrame {
             Color.WHITE
         ));
 
-        String[] actions = {"Add New Cab", "View All Bookings", "Generate Report", "System Settings"};
-        Color[] colors = {ACCENT_COLOR, SUCCESS_COLOR, WARNING_COLOR, DANGER_COLOR};
+        String[] actions = {"Add New Cab", "View All Bookings", "Generate Report", "Load Simulator", "System Settings"};
+        Color[] colors = {ACCENT_COLOR, SUCCESS_COLOR, WARNING_COLOR, SECONDARY_COLOR, DANGER_COLOR};
 
         for (int i = 0; i < actions.length; i++) {
             JButton btn = createQuickActionButton(actions[i], colors[i]);
@@ -319,20 +440,74 @@ public class CabBookingSystemEnhanced extends JFrame {
                 break;
             case "View All Bookings":
                 JOptionPane.showMessageDialog(this, 
-                    "Total Bookings: " + bookings.size() + 
-                    "\nActive: " + bookings.stream().filter(b -> b.status == null || !b.status.equals("Completed")).count(),
+                    "Total Bookings: " + aggregates.totalBookings() + 
+                    "\nActive: " + aggregates.activeBookings(),
                     "Booking Summary", 
                     JOptionPane.INFORMATION_MESSAGE);
                 break;
             case "Generate Report":
                 generateQuickReport();
                 break;
+            case "Load Simulator":
+                toggleSimulator();
+                break;
             case "System Settings":
                 showSystemSettings();
                 break;
         }
     }
 
+    // Serves the rider and driver apps from this window's store
+    private void startApi(int port) {
+        try {
+            api.start(port);
+        } catch (IOException e) {
+            e.printStackTrace();
+            showErrorDialog("Could not start the booking API on port " + port + ": " + e.getMessage());
+        }
+    }
+
+    // Moves cabs with the GPS fixes their devices send
+    private void startPositionIngest(int port) {
+        try {
+            positions.start(port);
+        } catch (IOException e) {
+            e.printStackTrace();
+            showErrorDialog("Could not listen for cab positions on port " + port + ": " + e.getMessage());
+        }
+    }
+
+    // Starts simulated traffic against this store, or stops it and shows how it went
+    private void toggleSimulator() {
+        if (simulator != null && simulator.isRunning()) {
+            simulator.stop();
+            JOptionPane.showMessageDialog(this, simulator.report(), "Load Simulator",
+                    JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        String rate = JOptionPane.showInputDialog(this,
+                "Ride requests per second?\nSimulated cabs and bookings are added to this system's data.", "200");
+        if (rate == null) {
+            return;
+        }
+        LoadSimulator.Config config = new LoadSimulator.Config();
+        try {
+            config.requestsPerSecond = Double.parseDouble(rate.trim());
+        } catch (NumberFormatException e) {
+            showErrorDialog("Please enter a valid rate!");
+            return;
+        }
+        if (config.requestsPerSecond <= 0) {
+            showErrorDialog("Please enter a valid rate!");
+            return;
+        }
+        config.cabs = 500;
+        config.movesPerSecond = 500;
+        simulator = new LoadSimulator(store, dispatcher, batchDispatcher, config);
+        simulator.start();
+        showSuccessDialog("Simulator running. Choose Load Simulator again to stop it and see the report.");
+    }
+
     private void showQuickAddCabDialog() {
         JDialog dialog = new JDialog(this, "Add New Cab", true);
         dialog.setLayout(new BorderLayout());
@@ -374,8 +549,10 @@ public class CabBookingSystemEnhanced extends JFrame {
 
                 Cab c = new Cab(idField.getText(), driverField.getText(), locationField.getText(),
                         typeField.getText(), Double.parseDouble(fareField.getText()));
-                cabs.add(c);
-                updateDashboard();
+                if (!store.addCab(c)) {
+                    showErrorDialog("Cab ID " + c.id + " already exists!");
+                    return;
+                }
                 showSuccessDialog("Cab added successfully!");
                 dialog.dispose();
                 
@@ -396,9 +573,9 @@ public class CabBookingSystemEnhanced extends JFrame {
     }
 
     private void generateQuickReport() {
-        double totalRevenue = bookings.stream().mapToDouble(b -> b.fare).sum();
-        long totalCabs = cabs.size();
-        long activeBookings = bookings.stream().filter(b -> b.status == null || !b.status.equals("Completed")).count();
+        double totalRevenue = aggregates.totalRevenue();
+        long totalCabs = aggregates.totalCabs();
+        long activeBookings = aggregates.activeBookings();
 
         String report = String.format(
             "📊 QUICK REPORT\n\n" +
@@ -408,7 +585,7 @@ public class CabBookingSystemEnhanced extends JFrame {
             "Average Fare: ₹%.2f\n" +
             "Utilization Rate: %.1f%%",
             totalCabs, activeBookings, totalRevenue,
-            totalRevenue / Math.max(bookings.size(), 1),
+            aggregates.averageFare(),
             (activeBookings * 100.0) / Math.max(totalCabs, 1)
         );
 
@@ -427,29 +604,42 @@ public class CabBookingSystemEnhanced extends JFrame {
             JOptionPane.INFORMATION_MESSAGE);
     }
 
+    // Asks the background refresher for a new snapshot; callable from any thread
     private void updateDashboard() {
-        // Update statistics
-        long totalCabs = cabs.size();
-        long activeBookings = bookings.stream().filter(b -> b.status == null || !b.status.equals("Completed")).count();
-        long availableCabs = cabs.stream().filter(c -> 
-            bookings.stream().noneMatch(b -> b.cabId.equals(c.id) && 
-            (b.status == null || !b.status.equals("Completed")))).count();
-        double totalRevenue = bookings.stream().mapToDouble(b -> b.fare).sum();
+        dashboardRefresher.requestRefresh();
+    }
 
-        // Simulate some dynamic changes for demo
-        Random rand = new Random();
-        if (rand.nextDouble() < 0.3) { // 30% chance to simulate a new booking
-            totalRevenue += rand.nextInt(100) + 50;
-        }
+    // Runs on the refresher thread
+    private DashboardSnapshot captureDashboard(long sequence) {
+        double dispatchRate = batchDispatcher.throughputPerSecond();
+        double dispatchP99 = batchDispatcher.p99LatencyMillis();
+        return store.readConsistent(() -> new DashboardSnapshot(sequence,
+                aggregates.totalCabs(), aggregates.activeBookings(),
+                availability.availableCount(), aggregates.totalRevenue(), dispatchRate, dispatchP99,
+                surgeTracker.latest()));
+    }
 
+    // Runs on the EDT with the latest snapshot only
+    private void applyDashboard(DashboardSnapshot snapshot) {
         // Update labels with animation effect
-        updateStatLabel(totalCabsLabel, "Total Cabs", String.valueOf(totalCabs), PRIMARY_COLOR);
-        updateStatLabel(activeBookingsLabel, "Active Bookings", String.valueOf(activeBookings), ACCENT_COLOR);
-        updateStatLabel(availableCabsLabel, "Available Cabs", String.valueOf(availableCabs), SUCCESS_COLOR);
-        updateStatLabel(revenueLabel, "Revenue", String.format("₹%.2f", totalRevenue), WARNING_COLOR);
+        updateStatLabel(totalCabsLabel, "Total Cabs", String.valueOf(snapshot.totalCabs), PRIMARY_COLOR);
+        updateStatLabel(activeBookingsLabel, "Active Bookings", String.valueOf(snapshot.activeBookings), ACCENT_COLOR);
+        updateStatLabel(availableCabsLabel, "Available Cabs", String.valueOf(snapshot.availableCabs), SUCCESS_COLOR);
+        updateStatLabel(revenueLabel, "Revenue", String.format("₹%.2f", snapshot.totalRevenue), WARNING_COLOR);
+        updateStatLabel(dispatchLabel, String.format("Dispatch · p99 %.0f ms", snapshot.dispatchP99Millis),
+                String.format("%.1f/s", snapshot.dispatchPerSecond), ACCENT_COLOR);
+        SurgeTracker.Reading surge = snapshot.surge;
+        updateStatLabel(surgeLabel, String.format("Surge · %d req / %d free", surge.totalDemand(), surge.totalSupply()),
+                String.format("%.1fx", surge.maxMultiplier()), WARNING_COLOR);
+        if (!analyticsValues.isEmpty()) {
+            analyticsValues.get("Revenue Trend").setText(revenueTrendSummary());
+            analyticsValues.get("Popular Routes").setText(popularRouteSummary());
+            analyticsValues.get("Peak Hours").setText(peakHoursSummary());
+            analyticsValues.get("Demand Hotspot").setText(hotspotSummary(surge));
+        }
 
-        // Update tables
-        refreshTables();
+        // Tables update themselves row by row as cabs/bookings change,
+        // so there is nothing to rebuild here
     }
 
     private void updateStatLabel(JLabel label, String title, String value, Color color) {
@@ -461,31 +651,12 @@ public class CabBookingSystemEnhanced extends JFrame {
         );
     }
 
+    // Manual refresh only: the cab model is a view over the live list and the
+    // booking model keeps itself current, so this just repaints and refetches
     private void refreshTables() {
-        // Refresh cab table
-        if (cabModel != null) {
-            cabModel.setRowCount(0);
-            for (Cab cab : cabs) {
-                boolean isAvailable = bookings.stream().noneMatch(b -> 
-                    b.cabId.equals(cab.id) && (b.status == null || !b.status.equals("Completed")));
-                cabModel.addRow(new Object[]{
-                    cab.id, cab.driver, cab.location, cab.type, 
-                    "₹" + cab.fare, isAvailable ? "Available" : "On Trip"
-                });
-            }
-        }
-
-        // Refresh booking table
-        if (bookingModel != null) {
-            bookingModel.setRowCount(0);
-            for (Booking booking : bookings) {
-                String status = booking.status != null ? booking.status : "Confirmed";
-                bookingModel.addRow(new Object[]{
-                    booking.id, booking.cabId, booking.customer, 
-                    booking.from, booking.to, "₹" + booking.fare, status
-                });
-            }
-        }
+        cabModel.syncRows();
+        cabModel.fireTableDataChanged();
+        bookingModel.reload();
     }
 
     private JButton createIconButton(String icon, String tooltip) {
@@ -540,15 +711,15 @@ public class CabBookingSystemEnhanced extends JFrame {
         title.setFont(new Font("Segoe UI", Font.BOLD, 20));
         title.setForeground(PRIMARY_COLOR);
 
-        // Create sample analytics content
+        // Live analytics; values refresh with the dashboard
         JPanel analyticsContent = new JPanel(new GridLayout(2, 2, 15, 15));
         analyticsContent.setBackground(BACKGROUND_COLOR);
 
         // Add analytics cards
-        analyticsContent.add(createAnalyticsCard("Revenue Trend", "", "Growing steadily", SUCCESS_COLOR));
-        analyticsContent.add(createAnalyticsCard("Popular Routes", "", "Airport → Downtown", ACCENT_COLOR));
-        analyticsContent.add(createAnalyticsCard("Peak Hours", "", "8-10 AM, 5-7 PM", WARNING_COLOR));
-        analyticsContent.add(createAnalyticsCard("Customer Rating", "", "4.8/5.0", PRIMARY_COLOR));
+        analyticsContent.add(createAnalyticsCard("Revenue Trend", "", revenueTrendSummary(), SUCCESS_COLOR));
+        analyticsContent.add(createAnalyticsCard("Popular Routes", "", popularRouteSummary(), ACCENT_COLOR));
+        analyticsContent.add(createAnalyticsCard("Peak Hours", "", peakHoursSummary(), WARNING_COLOR));
+        analyticsContent.add(createAnalyticsCard("Demand Hotspot", "", hotspotSummary(surgeTracker.latest()), PRIMARY_COLOR));
 
         panel.add(title, BorderLayout.NORTH);
         panel.add(analyticsContent, BorderLayout.CENTER);
@@ -575,6 +746,7 @@ public class CabBookingSystemEnhanced extends JFrame {
         JLabel valueLabel = new JLabel(value, SwingConstants.CENTER);
         valueLabel.setFont(new Font("Segoe UI", Font.PLAIN, 14));
         valueLabel.setForeground(Color.WHITE);
+        analyticsValues.put(title, valueLabel);
 
         JPanel contentPanel = new JPanel(new BorderLayout());
         contentPanel.setBackground(color);
@@ -602,29 +774,106 @@ public class CabBookingSystemEnhanced extends JFrame {
     private String getAnalyticsDetails(String title) {
         switch (title) {
             case "Revenue Trend":
-                return "Last 7 days revenue:\n" +
-                       "• Today: ₹" + (bookings.stream().mapToDouble(b -> b.fare).sum()) + "\n" +
-                       "• Growth: +12% from last week";
+                StringBuilder trend = new StringBuilder("Revenue by day:\n");
+                for (int day = 0; day < 7; day++) {
+                    trend.append(String.format("• %s: ₹%.2f%n",
+                            day == 0 ? "Today" : day == 1 ? "Yesterday" : day + " days ago",
+                            analytics.revenueDaysAgo(day)));
+                }
+                trend.append(String.format("%nThis hour: ₹%.2f (last hour ₹%.2f)%n",
+                        analytics.revenueHoursAgo(0), analytics.revenueHoursAgo(1)));
+                trend.append(String.format("This week: ₹%.2f (%s vs last week)",
+                        analytics.revenueWeeksAgo(0), formatGrowth(
+                                AnalyticsEngine.growthPercent(analytics.revenueWeeksAgo(0), analytics.revenueWeeksAgo(1)))));
+                return trend.toString();
             case "Popular Routes":
-                return "Most booked routes:\n" +
-                       "1. Airport → Downtown (35%)\n" +
-                       "2. Mall → City Center (25%)\n" +
-                       "3. Downtown → Airport (20%)";
+                AnalyticsEngine.Route[] routes = analytics.topRoutes(5);
+                if (routes.length == 0) {
+                    return "No bookings yet";
+                }
+                StringBuilder popular = new StringBuilder("Most booked routes:\n");
+                long routed = Math.max(analytics.routedBookings(), 1);
+                for (int i = 0; i < routes.length; i++) {
+                    popular.append(String.format("%d. %s → %s (%d trips, %.0f%%)%n", i + 1, routes[i].from,
+                            routes[i].to, routes[i].count, routes[i].count * 100.0 / routed));
+                }
+                return popular.toString();
             case "Peak Hours":
-                return "Busiest hours:\n" +
-                       "• Morning: 8:00 AM - 10:00 AM\n" +
-                       "• Evening: 5:00 PM - 7:00 PM\n" +
-                       "• Recommendation: Deploy more cabs";
-            case "Customer Rating":
-                return "Customer feedback:\n" +
-                       "• Average Rating: 4.8/5.0\n" +
-                       "• Positive Reviews: 94%\n" +
-                       "• Response Time: < 5 mins";
+                long[] byHour = analytics.bookingsByHourOfDay();
+                int[] peaks = analytics.peakHours(3);
+                if (peaks.length == 0) {
+                    return "No timed bookings yet";
+                }
+                StringBuilder hours = new StringBuilder("Busiest hours (all time):\n");
+                for (int hour : peaks) {
+                    hours.append(String.format("• %s: %d bookings%n", hourRange(hour), byHour[hour]));
+                }
+                return hours.append(String.format("%nOut of %d timed bookings", analytics.timedBookings())).toString();
+            case "Demand Hotspot":
+                return surgeByZone(surgeTracker.latest());
             default:
                 return "No analytics available";
         }
     }
 
+    private String revenueTrendSummary() {
+        double today = analytics.revenueDaysAgo(0);
+        return String.format("Today ₹%.0f (%s vs yesterday)", today,
+                formatGrowth(AnalyticsEngine.growthPercent(today, analytics.revenueDaysAgo(1))));
+    }
+
+    private String popularRouteSummary() {
+        AnalyticsEngine.Route[] top = analytics.topRoutes(1);
+        return top.length == 0 ? "No bookings yet" : top[0].from + " → " + top[0].to + " (" + top[0].count + " trips)";
+    }
+
+    private String peakHoursSummary() {
+        int[] peaks = analytics.peakHours(2);
+        if (peaks.length == 0) {
+            return "No timed bookings yet";
+        }
+        StringBuilder text = new StringBuilder(hourRange(peaks[0]));
+        for (int i = 1; i < peaks.length; i++) {
+            text.append(", ").append(hourRange(peaks[i]));
+        }
+        return text.toString();
+    }
+
+    private static String hourRange(int hour) {
+        return String.format("%02d:00-%02d:00", hour, (hour + 1) % 24);
+    }
+
+    private static String formatGrowth(double percent) {
+        return Double.isNaN(percent) ? "n/a" : String.format("%+.0f%%", percent);
+    }
+
+    // One-line summary of the busiest surging zone for the analytics card
+    private String hotspotSummary(SurgeTracker.Reading surge) {
+        int zone = surge.hottestZone();
+        if (zone < 0) {
+            return "No surge: supply meets demand";
+        }
+        return String.format("%s %.1fx (%d req / %d free)", surge.zones[zone], surge.multipliers[zone],
+                surge.demand[zone], surge.supply[zone]);
+    }
+
+    private String surgeByZone(SurgeTracker.Reading surge) {
+        StringBuilder text = new StringBuilder("Requests in the last minute vs free cabs:\n");
+        for (int z = 0; z < surge.zones.length; z++) {
+            text.append(String.format("• %s: %d req / %d free → %.1fx%n", surge.zones[z], surge.demand[z],
+                    surge.supply[z], surge.multipliers[z]));
+        }
+        int zone = surge.hottestZone();
+        if (zone < 0) {
+            text.append("\nRecommendation: current fleet placement is fine");
+        } else {
+            // Enough extra cabs to bring the zone's demand/supply ratio back to 1
+            long shortfall = Math.max(1, surge.cabsNeeded(zone) - surge.supply[zone]);
+            text.append(String.format("%nRecommendation: move %d cab(s) towards %s", shortfall, surge.zones[zone]));
+        }
+        return text.toString();
+    }
+
     private JPanel createCabManagementPanel() {
         JPanel panel = new JPanel(new BorderLayout(10, 10));
         panel.setBackground(BACKGROUND_COLOR);
@@ -644,13 +893,6 @@ public class CabBookingSystemEnhanced extends JFrame {
         titlePanel.setBorder(BorderFactory.createEmptyBorder(0, 0, 15, 0));
 
         // Enhanced Table
-        cabModel = new DefaultTableModel(new String[]{"Cab ID", "Driver", "Location", "Type", "Fare", "Status"}, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
-        
         cabTable = createStyledTable(cabModel);
         JScrollPane scrollPane = new JScrollPane(cabTable);
         scrollPane.setBorder(new LineBorder(PRIMARY_COLOR, 1));
@@ -662,9 +904,6 @@ public class CabBookingSystemEnhanced extends JFrame {
         panel.add(scrollPane, BorderLayout.CENTER);
         panel.add(formPanel, BorderLayout.SOUTH);
 
-        // Initial table population
-        refreshTables();
-
         return panel;
     }
 
@@ -711,9 +950,11 @@ public class CabBookingSystemEnhanced extends JFrame {
 
                 Cab c = new Cab(cabId.getText(), driver.getText(), location.getText(),
                         type.getText(), Double.parseDouble(fare.getText()));
-                cabs.add(c);
-                updateDashboard();
-                
+                if (!store.addCab(c)) {
+                    showErrorDialog("Cab ID " + c.id + " already exists!");
+                    return;
+                }
+
                 clearFields(cabId, driver, location, type, fare);
                 showSuccessDialog("Cab added successfully!");
                 
@@ -740,37 +981,111 @@ public class CabBookingSystemEnhanced extends JFrame {
         JButton refreshBtn = createIconButton("🔄", "Refresh Table");
         refreshBtn.addActionListener(e -> refreshTables());
 
+        // Lifecycle actions on the selected booking
+        JButton startTrip = createStyledButton("Start Trip", ACCENT_COLOR);
+        startTrip.addActionListener(e -> moveSelectedBooking(BookingStatus.ON_TRIP));
+        JButton completeTrip = createStyledButton("Complete Trip", SUCCESS_COLOR);
+        completeTrip.addActionListener(e -> moveSelectedBooking(BookingStatus.COMPLETED));
+        JButton cancelBooking = createStyledButton("Cancel Booking", DANGER_COLOR);
+        cancelBooking.addActionListener(e -> moveSelectedBooking(BookingStatus.CANCELLED));
+
+        JPanel actions = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 0));
+        actions.setOpaque(false);
+        actions.add(startTrip);
+        actions.add(completeTrip);
+        actions.add(cancelBooking);
+        actions.add(refreshBtn);
+
         titlePanel.add(title, BorderLayout.WEST);
-        titlePanel.add(refreshBtn, BorderLayout.EAST);
+        titlePanel.add(actions, BorderLayout.EAST);
         titlePanel.setBorder(BorderFactory.createEmptyBorder(0, 0, 15, 0));
 
-        // Enhanced Booking Table
-        bookingModel = new DefaultTableModel(new String[]{"--------Booking ID", "Cab ID", "Customer", "From", "To", "Fare", "Status---------"}, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
-        
+        // Enhanced Booking Table, one page at a time
         bookingTable = createStyledTable(bookingModel);
         JScrollPane scrollPane = new JScrollPane(bookingTable);
         scrollPane.setBorder(new LineBorder(PRIMARY_COLOR, 1));
+        JPanel tablePanel = new JPanel(new BorderLayout(0, 10));
+        tablePanel.setOpaque(false);
+        tablePanel.add(createBookingSearchPanel(), BorderLayout.NORTH);
+        tablePanel.add(scrollPane, BorderLayout.CENTER);
 
         // Form Panel
         JPanel formPanel = createBookingFormPanel();
 
         panel.add(titlePanel, BorderLayout.NORTH);
-        panel.add(scrollPane, BorderLayout.CENTER);
+        panel.add(tablePanel, BorderLayout.CENTER);
         panel.add(formPanel, BorderLayout.SOUTH);
 
-        // Initial table population
-        refreshTables();
-
         return panel;
     }
 
+    // Search box, sort order and paging for the booking table
+    private JPanel createBookingSearchPanel() {
+        JComboBox<BookingIndex.Field> field = new JComboBox<>(BookingIndex.Field.values());
+        field.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        JTextField search = createStyledTextField();
+        search.setColumns(18);
+        search.setToolTipText("Customer or place prefix, exact cab ID, or \"from -> to\" for a route");
+        JComboBox<BookingIndex.Sort> sort = new JComboBox<>(BookingIndex.Sort.values());
+        sort.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        JButton previous = createStyledButton("◀ Prev", SECONDARY_COLOR);
+        JButton next = createStyledButton("Next ▶", SECONDARY_COLOR);
+        JLabel pageLabel = new JLabel();
+        pageLabel.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        pageLabel.setForeground(TEXT_SECONDARY);
+
+        Runnable runSearch = () -> bookingModel.search((BookingIndex.Field) field.getSelectedItem(),
+                search.getText(), (BookingIndex.Sort) sort.getSelectedItem());
+        // Search as you type, once typing pauses
+        Timer typingPause = new Timer(200, e -> runSearch.run());
+        typingPause.setRepeats(false);
+        search.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            @Override
+            public void insertUpdate(javax.swing.event.DocumentEvent e) {
+                typingPause.restart();
+            }
+
+            @Override
+            public void removeUpdate(javax.swing.event.DocumentEvent e) {
+                typingPause.restart();
+            }
+
+            @Override
+            public void changedUpdate(javax.swing.event.DocumentEvent e) {
+                typingPause.restart();
+            }
+        });
+        search.addActionListener(e -> {
+            typingPause.stop();
+            runSearch.run();
+        });
+        field.addActionListener(e -> runSearch.run());
+        sort.addActionListener(e -> runSearch.run());
+        previous.addActionListener(e -> bookingModel.showPage(bookingModel.page - 1));
+        next.addActionListener(e -> bookingModel.showPage(bookingModel.page + 1));
+        bookingModel.setPageListener(() -> {
+            pageLabel.setText(String.format("Page %d of %d  (%d bookings)", bookingModel.page + 1,
+                    bookingModel.pageCount(), bookingModel.total));
+            previous.setEnabled(bookingModel.page > 0);
+            next.setEnabled(bookingModel.page + 1 < bookingModel.pageCount());
+        });
+
+        JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5));
+        searchPanel.setBackground(CARD_COLOR);
+        searchPanel.add(new JLabel("Search:"));
+        searchPanel.add(field);
+        searchPanel.add(search);
+        searchPanel.add(new JLabel("Sort:"));
+        searchPanel.add(sort);
+        searchPanel.add(previous);
+        searchPanel.add(pageLabel);
+        searchPanel.add(next);
+        bookingModel.reload();
+        return searchPanel;
+    }
+
     private JPanel createBookingFormPanel() {
-        JPanel formPanel = new JPanel(new GridLayout(2, 6, 10, 10));
+        JPanel formPanel = new JPanel(new GridLayout(2, 7, 10, 10));
         formPanel.setBackground(CARD_COLOR);
         formPanel.setBorder(BorderFactory.createCompoundBorder(
             new LineBorder(PRIMARY_COLOR, 1),
@@ -778,7 +1093,7 @@ public class CabBookingSystemEnhanced extends JFrame {
         ));
 
         // Labels
-        String[] labels = {"Booking ID", "Cab ID", "Customer", "From", "To", "Action"};
+        String[] labels = {"Booking ID", "Cab ID (blank = nearest)", "Cab Type", "Customer", "From", "To", "Action"};
         for (String label : labels) {
             JLabel lbl = new JLabel(label);
             lbl.setFont(new Font("Segoe UI", Font.BOLD, 12));
@@ -792,9 +1107,12 @@ public class CabBookingSystemEnhanced extends JFrame {
         JTextField customer = createStyledTextField();
         JTextField from = createStyledTextField();
         JTextField to = createStyledTextField();
+        JComboBox<String> cabType = new JComboBox<>(new String[]{"Any", "Sedan", "SUV", "Hatchback"});
+        styleComboBox(cabType);
 
         formPanel.add(bookingId);
         formPanel.add(cabBookingId);
+        formPanel.add(cabType);
         formPanel.add(customer);
         formPanel.add(from);
         formPanel.add(to);
@@ -803,25 +1121,39 @@ public class CabBookingSystemEnhanced extends JFrame {
         JButton addBooking = createStyledButton("Book Cab", ACCENT_COLOR);
         addBooking.addActionListener(e -> {
             try {
-                if (bookingId.getText().isEmpty() || cabBookingId.getText().isEmpty() || 
+                if (bookingId.getText().isEmpty() ||
                     customer.getText().isEmpty() || from.getText().isEmpty() || 
                     to.getText().isEmpty()) {
                     showErrorDialog("Please fill all fields!");
                     return;
                 }
 
-                Optional<Cab> cabOpt = cabs.stream().filter(c -> c.id.equals(cabBookingId.getText())).findFirst();
-                if (cabOpt.isPresent()) {
-                    Cab c = cabOpt.get();
-                    Booking b = new Booking(bookingId.getText(), c.id, customer.getText(),
-                            from.getText(), to.getText(), c.fare);
-                    bookings.add(b);
-                    updateDashboard();
-                    
-                    clearFields(bookingId, cabBookingId, customer, from, to);
-                    showSuccessDialog("Booking confirmed successfully!");
+                // No cab given: dispatch the nearest free one to the pickup
+                boolean autoAssign = cabBookingId.getText().trim().isEmpty();
+                if (autoAssign && Places.resolve(from.getText()) == null) {
+                    showErrorDialog("Unknown pickup location! Use a known place or \"lat,lon\" to auto-assign.");
+                    return;
+                }
+                String type = cabType.getSelectedIndex() == 0 ? null : (String) cabType.getSelectedItem();
+                JTextField[] fields = {bookingId, cabBookingId, customer, from, to};
+                if (autoAssign) {
+                    // Goes through the batch dispatcher; the answer arrives after its next window
+                    String id = bookingId.getText();
+                    addBooking.setEnabled(false);
+                    batchDispatcher.submit(id, customer.getText(), from.getText(), to.getText(), type)
+                            .whenComplete((assignment, error) -> SwingUtilities.invokeLater(() -> {
+                                addBooking.setEnabled(true);
+                                if (error != null) {
+                                    showErrorDialog("Dispatch failed: " + error.getMessage());
+                                } else {
+                                    showBookingResult(assignment.result, true, assignment.cab, id, type, fields);
+                                }
+                            }));
                 } else {
-                    showErrorDialog("Cab not found! Please check the Cab ID.");
+                    surgeTracker.recordRequest(from.getText());
+                    BookingStore.BookResult result = store.bookIfFree(bookingId.getText(), cabBookingId.getText(),
+                            customer.getText(), from.getText(), to.getText());
+                    showBookingResult(result, false, null, bookingId.getText(), null, fields);
                 }
             } catch (Exception ex) {
                 showErrorDialog("Invalid input! Please check your data.");
@@ -832,6 +1164,58 @@ public class CabBookingSystemEnhanced extends JFrame {
         return formPanel;
     }
 
+    private void moveSelectedBooking(BookingStatus next) {
+        int row = bookingTable.getSelectedRow();
+        if (row < 0) {
+            showErrorDialog("Please select a booking first!");
+            return;
+        }
+        String bookingId = (String) bookingModel.getValueAt(row, 0);
+        switch (store.transition(bookingId, next)) {
+            case MOVED:
+                // The table row and dashboard follow through the store's status event
+                if (next == BookingStatus.COMPLETED) {
+                    Booking completed = store.findBooking(bookingId);
+                    showSuccessDialog(String.format("Trip %s completed! Fare: ₹%.2f", bookingId, completed.fare));
+                } else {
+                    showSuccessDialog("Booking " + bookingId + " is now " + next.label + ".");
+                }
+                break;
+            case NOT_ALLOWED:
+                Booking booking = store.findBooking(bookingId);
+                showErrorDialog("Booking " + bookingId + " is " + booking.status.label
+                        + " and can't be moved to " + next.label + ".");
+                break;
+            default:
+                showErrorDialog("Booking " + bookingId + " not found!");
+        }
+    }
+
+    // assignedCab is only set for successful auto-assignments
+    private void showBookingResult(BookingStore.BookResult result, boolean autoAssign, Cab assignedCab,
+                                   String bookingId, String type, JTextField... fields) {
+        switch (result) {
+            case BOOKED:
+                clearFields(fields);
+                Booking booked = store.findBooking(bookingId);
+                String fare = booked != null ? String.format("\nFare: ₹%.2f", booked.fare) : "";
+                showSuccessDialog((autoAssign
+                        ? "Booking confirmed! Cab " + assignedCab.id + " (" + assignedCab.driver + ") is on the way."
+                        : "Booking confirmed successfully!") + fare);
+                break;
+            case CAB_BUSY:
+                showErrorDialog("This cab is already on a trip! Please choose another cab.");
+                break;
+            case DUPLICATE_ID:
+                showErrorDialog("Booking ID " + bookingId + " already exists!");
+                break;
+            default:
+                showErrorDialog(autoAssign
+                        ? "No free " + (type != null ? type + " " : "") + "cab near the pickup right now."
+                        : "Cab not found! Please check the Cab ID.");
+        }
+    }
+
     private JPanel createExportPanel() {
         JPanel panel = new JPanel(new BorderLayout());
         panel.setBackground(BACKGROUND_COLOR);
@@ -856,19 +1240,204 @@ public class CabBookingSystemEnhanced extends JFrame {
             SwingConstants.CENTER
         );
 
+        JCheckBox gzipBox = new JCheckBox("Compress (bookings.csv.gz)");
+        gzipBox.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        gzipBox.setBackground(BACKGROUND_COLOR);
+        gzipBox.setHorizontalAlignment(SwingConstants.CENTER);
+
+        JProgressBar progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        progressBar.setString("Ready");
+        progressBar.setForeground(ACCENT_COLOR);
+
         JButton exportBtn = createStyledButton(" Export to CSV", PRIMARY_COLOR);
         exportBtn.setPreferredSize(new Dimension(200, 50));
-        exportBtn.addActionListener(e -> exportToCSV());
+        JButton cancelBtn = createStyledButton("Cancel Export", DANGER_COLOR);
+        cancelBtn.setEnabled(false);
+        exportBtn.addActionListener(e -> exportToCSV(gzipBox.isSelected(), progressBar, exportBtn, cancelBtn));
+        cancelBtn.addActionListener(e -> {
+            if (exportWorker != null) {
+                exportWorker.cancel(false);
+            }
+        });
 
         contentPanel.add(title, gbc);
         contentPanel.add(description, gbc);
+        contentPanel.add(gzipBox, gbc);
         contentPanel.add(exportBtn, gbc);
+        contentPanel.add(progressBar, gbc);
+        contentPanel.add(cancelBtn, gbc);
+
+        panel.add(contentPanel, BorderLayout.CENTER);
+        return panel;
+    }
+
+    private JPanel createImportPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.setBackground(BACKGROUND_COLOR);
+        panel.setBorder(BorderFactory.createEmptyBorder(50, 50, 50, 50));
+
+        JPanel contentPanel = new JPanel(new GridBagLayout());
+        contentPanel.setBackground(BACKGROUND_COLOR);
+
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.gridwidth = GridBagConstraints.REMAINDER;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.insets = new Insets(10, 0, 10, 0);
+
+        JLabel title = new JLabel("Import Data", SwingConstants.CENTER);
+        title.setFont(new Font("Segoe UI", Font.BOLD, 24));
+        title.setForeground(PRIMARY_COLOR);
+
+        JLabel description = new JLabel(
+            "<html><center style='color: #666666; font-size: 14px;'>"
+            + "Bulk load cabs (CabID, Driver, Location, Type, Fare) or bookings<br>"
+            + "(BookingID, CabID, Customer, From, To, Fare, Status) from a CSV file.<br>"
+            + "Rows that can't be imported are listed in a '.errors.csv' file next to it.</center></html>",
+            SwingConstants.CENTER
+        );
+
+        JProgressBar progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        progressBar.setString("Ready");
+        progressBar.setForeground(ACCENT_COLOR);
+
+        JButton importCabsBtn = createStyledButton(" Import Cabs CSV", PRIMARY_COLOR);
+        JButton importBookingsBtn = createStyledButton(" Import Bookings CSV", ACCENT_COLOR);
+        JButton cancelBtn = createStyledButton("Cancel Import", DANGER_COLOR);
+        cancelBtn.setEnabled(false);
+        JButton[] startButtons = {importCabsBtn, importBookingsBtn};
+        importCabsBtn.addActionListener(e ->
+            importFromCSV(CsvImporter.Kind.CABS, progressBar, startButtons, cancelBtn));
+        importBookingsBtn.addActionListener(e ->
+            importFromCSV(CsvImporter.Kind.BOOKINGS, progressBar, startButtons, cancelBtn));
+        cancelBtn.addActionListener(e -> {
+            if (importWorker != null) {
+                importWorker.cancel(false);
+            }
+        });
+
+        contentPanel.add(title, gbc);
+        contentPanel.add(description, gbc);
+        contentPanel.add(importCabsBtn, gbc);
+        contentPanel.add(importBookingsBtn, gbc);
+        contentPanel.add(progressBar, gbc);
+        contentPanel.add(cancelBtn, gbc);
 
         panel.add(contentPanel, BorderLayout.CENTER);
         return panel;
     }
 
-    private JTable createStyledTable(DefaultTableModel model) {
+    private JPanel createReportsPanel() {
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        panel.setBackground(BACKGROUND_COLOR);
+        panel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+
+        JLabel title = new JLabel("Reports");
+        title.setFont(new Font("Segoe UI", Font.BOLD, 20));
+        title.setForeground(PRIMARY_COLOR);
+
+        JComboBox<ReportEngine.Kind> kind = new JComboBox<>(ReportEngine.Kind.values());
+        kind.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        JTextField fromDate = createStyledTextField();
+        JTextField toDate = createStyledTextField();
+        fromDate.setColumns(9);
+        toDate.setColumns(9);
+        fromDate.setToolTipText("yyyy-MM-dd, blank for all time");
+        toDate.setToolTipText("yyyy-MM-dd (inclusive), blank for all time");
+        JButton runBtn = createStyledButton("Run Report", ACCENT_COLOR);
+        JButton cancelBtn = createStyledButton("Cancel", DANGER_COLOR);
+        cancelBtn.setEnabled(false);
+        JLabel status = new JLabel("Pick a report and press Run");
+        status.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        status.setForeground(TEXT_SECONDARY);
+
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5));
+        controls.setBackground(CARD_COLOR);
+        controls.add(kind);
+        controls.add(new JLabel("From:"));
+        controls.add(fromDate);
+        controls.add(new JLabel("To:"));
+        controls.add(toDate);
+        controls.add(runBtn);
+        controls.add(cancelBtn);
+
+        JPanel top = new JPanel(new BorderLayout(0, 10));
+        top.setBackground(BACKGROUND_COLOR);
+        top.add(title, BorderLayout.NORTH);
+        top.add(controls, BorderLayout.CENTER);
+        top.add(status, BorderLayout.SOUTH);
+
+        ReportTableModel model = new ReportTableModel();
+        JTable table = createStyledTable(model);
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setBorder(BorderFactory.createLineBorder(PRIMARY_COLOR, 1));
+
+        runBtn.addActionListener(e -> {
+            long from;
+            long to;
+            try {
+                from = fromDate.getText().trim().isEmpty() ? 0 : startOfDay(LocalDate.parse(fromDate.getText().trim()));
+                to = toDate.getText().trim().isEmpty() ? Long.MAX_VALUE
+                        : startOfDay(LocalDate.parse(toDate.getText().trim()).plusDays(1));
+            } catch (DateTimeParseException ex) {
+                showErrorDialog("Dates must look like 2024-05-31!");
+                return;
+            }
+            runReport((ReportEngine.Kind) kind.getSelectedItem(), from, to, model, status, runBtn, cancelBtn);
+        });
+        cancelBtn.addActionListener(e -> {
+            if (reportWorker != null) {
+                reportWorker.cancel(false);
+            }
+        });
+
+        panel.add(top, BorderLayout.NORTH);
+        panel.add(scrollPane, BorderLayout.CENTER);
+        return panel;
+    }
+
+    private static long startOfDay(LocalDate date) {
+        return date.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    // Aggregation runs on the fork/join pool; the EDT only receives the finished table
+    private void runReport(ReportEngine.Kind kind, long from, long to, ReportTableModel model, JLabel status,
+                           JButton runBtn, JButton cancelBtn) {
+        runBtn.setEnabled(false);
+        cancelBtn.setEnabled(true);
+        status.setText("Running " + kind + "...");
+
+        reportWorker = new SwingWorker<ReportEngine.Report, Void>() {
+            @Override
+            protected ReportEngine.Report doInBackground() {
+                return reportEngine.run(kind, from, to, this::isCancelled);
+            }
+
+            @Override
+            protected void done() {
+                runBtn.setEnabled(true);
+                cancelBtn.setEnabled(false);
+                if (isCancelled()) {
+                    status.setText("Cancelled");
+                    return;
+                }
+                try {
+                    ReportEngine.Report report = get();
+                    model.show(report);
+                    status.setText(String.format("%s: %d rows from %d bookings in %d ms", report.title,
+                            report.rows.size(), report.scannedRows, report.millis));
+                } catch (Exception e) {
+                    status.setText("Failed");
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    showErrorDialog("Error running report: " + cause.getMessage());
+                }
+            }
+        };
+        reportWorker.execute();
+    }
+
+    private JTable createStyledTable(TableModel model) {
         JTable table = new JTable(model) {
             @Override
             public Component prepareRenderer(TableCellRenderer renderer, int row, int column) {
@@ -950,58 +1519,488 @@ public class CabBookingSystemEnhanced extends JFrame {
         JOptionPane.showMessageDialog(this, message, "Error", JOptionPane.ERROR_MESSAGE);
     }
 
-    private void exportToCSV() {
-        try (PrintWriter pw = new PrintWriter(new File("bookings.csv"))) {
-            pw.println("BookingID,CabID,Customer,From,To,Fare,Status");
-            for (Booking b : bookings) {
-                pw.println(b.id + "," + b.cabId + "," + b.customer + "," + b.from + "," + b.to + "," + b.fare + "," + b.status);
+    // Streams the export on a worker thread; the EDT only sees progress updates
+    private void exportToCSV(boolean gzip, JProgressBar progressBar, JButton exportBtn, JButton cancelBtn) {
+        String fileName = gzip ? "bookings.csv.gz" : "bookings.csv";
+        exportBtn.setEnabled(false);
+        cancelBtn.setEnabled(true);
+        progressBar.setValue(0);
+        progressBar.setString("Exporting...");
+
+        exportWorker = new SwingWorker<Long, Void>() {
+            @Override
+            protected Long doInBackground() throws Exception {
+                return new CsvExporter(store).export(Paths.get(fileName), gzip,
+                    (written, total) -> setProgress((int) (written * 100 / Math.max(total, 1))),
+                    this::isCancelled);
             }
-            showSuccessDialog("Data exported successfully to bookings.csv!");
-        } catch (Exception e) {
-            showErrorDialog("Error exporting data: " + e.getMessage());
+
+            @Override
+            protected void done() {
+                exportBtn.setEnabled(true);
+                cancelBtn.setEnabled(false);
+                if (isCancelled()) {
+                    progressBar.setString("Cancelled");
+                    return;
+                }
+                try {
+                    long rows = get();
+                    progressBar.setValue(100);
+                    progressBar.setString(rows + " bookings exported");
+                    showSuccessDialog("Data exported successfully to " + fileName + "!");
+                } catch (Exception e) {
+                    progressBar.setString("Failed");
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    showErrorDialog("Error exporting data: " + cause.getMessage());
+                }
+            }
+        };
+        exportWorker.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) {
+                progressBar.setValue((Integer) e.getNewValue());
+                progressBar.setString(e.getNewValue() + "%");
+            }
+        });
+        exportWorker.execute();
+    }
+
+    // Parses and validates on worker threads; the dashboard refreshes once when done
+    private void importFromCSV(CsvImporter.Kind kind, JProgressBar progressBar, JButton[] startButtons, JButton cancelBtn) {
+        JFileChooser chooser = new JFileChooser(new File("."));
+        chooser.setDialogTitle(kind == CsvImporter.Kind.CABS ? "Import Cabs" : "Import Bookings");
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
         }
+        File file = chooser.getSelectedFile();
+        for (JButton b : startButtons) {
+            b.setEnabled(false);
+        }
+        cancelBtn.setEnabled(true);
+        progressBar.setValue(0);
+        progressBar.setString("Importing " + file.getName() + "...");
+
+        importWorker = new SwingWorker<CsvImporter.Result, Void>() {
+            @Override
+            protected CsvImporter.Result doInBackground() throws Exception {
+                return new CsvImporter(store).importFile(file.toPath(), kind,
+                    (read, total) -> setProgress((int) (read * 100 / Math.max(total, 1))),
+                    this::isCancelled);
+            }
+
+            @Override
+            protected void done() {
+                for (JButton b : startButtons) {
+                    b.setEnabled(true);
+                }
+                cancelBtn.setEnabled(false);
+                if (isCancelled()) {
+                    progressBar.setString("Cancelled");
+                    return;
+                }
+                try {
+                    CsvImporter.Result result = get();
+                    progressBar.setValue(100);
+                    progressBar.setString(result.imported + " imported, " + result.rejected + " rejected");
+                    if (result.errorReport == null) {
+                        showSuccessDialog(result.imported + " rows imported successfully!");
+                    } else {
+                        showErrorDialog(result.imported + " rows imported, " + result.rejected
+                            + " rejected.\nSee " + result.errorReport.toAbsolutePath() + " for details.");
+                    }
+                } catch (Exception e) {
+                    progressBar.setString("Failed");
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    showErrorDialog("Error importing data: " + cause.getMessage());
+                }
+            }
+        };
+        importWorker.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) {
+                progressBar.setValue((Integer) e.getNewValue());
+                progressBar.setString(e.getNewValue() + "%");
+            }
+        });
+        importWorker.execute();
     }
 
-    // -------------------- INNER CLASSES --------------------
-    class Cab {
-        String id, driver, location, type;
-        double fare;
+    // -------------------- TABLE MODELS --------------------
+    // Read-only views straight over the store. Cells are formatted in
+    // getValueAt, so only rows the table actually paints cost anything.
+    // The store may grow from any thread; the row count the table sees only
+    // moves forward on the EDT, in coalesced batches.
+    abstract class LiveTableModel<T> extends AbstractTableModel {
+        private final String[] columns;
+        private final AtomicBoolean syncQueued = new AtomicBoolean();
+        private AppendOnlyList<T> shown;
+        private int rowCount;
+
+        LiveTableModel(String... columns) {
+            this.columns = columns;
+        }
+
+        abstract AppendOnlyList<T> rows();
+
+        abstract Object cell(T row, int column);
+
+        void rowSynced(T row, int index) { }
+
+        @Override
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columns[column];
+        }
 
-        Cab(String id, String driver, String location, String type, double fare) {
-            this.id = id;
-            this.driver = driver;
-            this.location = location;
-            this.type = type;
-            this.fare = fare;
+        @Override
+        public Object getValueAt(int row, int column) {
+            return cell(shown.get(row), column);
+        }
+
+        // Callable from any thread
+        void rowsAppended() {
+            if (syncQueued.compareAndSet(false, true)) {
+                SwingUtilities.invokeLater(this::syncRows);
+            }
+        }
+
+        void syncRows() {
+            syncQueued.set(false);
+            AppendOnlyList<T> live = rows();
+            if (live != shown) {
+                shown = live;
+                rowCount = live.size();
+                for (int i = 0; i < rowCount; i++) {
+                    rowSynced(live.get(i), i);
+                }
+                fireTableDataChanged();
+                return;
+            }
+            int first = rowCount;
+            int last = live.size();
+            if (last > first) {
+                for (int i = first; i < last; i++) {
+                    rowSynced(live.get(i), i);
+                }
+                rowCount = last;
+                fireTableRowsInserted(first, last - 1);
+            }
+        }
+    }
+
+    class CabTableModel extends LiveTableModel<Cab> {
+        private final Map<String, Integer> rowsByCabId = new HashMap<>();
+
+        CabTableModel() {
+            super("Cab ID", "Driver", "Location", "Type", "Fare", "Status");
+        }
+
+        @Override
+        AppendOnlyList<Cab> rows() {
+            return store.cabs();
+        }
+
+        @Override
+        Object cell(Cab cab, int column) {
+            switch (column) {
+                case 0: return cab.id;
+                case 1: return cab.driver;
+                case 2: return cab.location;
+                case 3: return cab.type;
+                case 4: return "₹" + cab.fare;
+                case 5: return availability.isAvailable(cab.id) ? "Available" : "On Trip";
+                default: return null;
+            }
+        }
+
+        @Override
+        void rowSynced(Cab cab, int index) {
+            rowsByCabId.put(cab.id, index);
+        }
+
+        // Callable from any thread
+        void cabAvailabilityChanged(String cabId) {
+            SwingUtilities.invokeLater(() -> {
+                Integer row = rowsByCabId.get(cabId);
+                if (row != null) {
+                    fireTableCellUpdated(row, 5);
+                }
+            });
         }
     }
 
-    class Booking {
-        String id, cabId, customer, from, to, status;
-        double fare;
+    // Read-only table over the last finished report
+    static class ReportTableModel extends AbstractTableModel {
+        private ReportEngine.Report report;
+
+        void show(ReportEngine.Report report) {
+            this.report = report;
+            fireTableStructureChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return report == null ? 0 : report.rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return report == null ? 0 : report.columns.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return report.columns[column];
+        }
 
-        Booking(String id, String cabId, String customer, String from, String to, double fare) {
-            this.id = id;
-            this.cabId = cabId;
-            this.customer = customer;
-            this.from = from;
-            this.to = to;
-            this.fare = fare;
-            this.status = "Confirmed";
+        @Override
+        public Object getValueAt(int row, int column) {
+            return report.rows.get(row)[column];
+        }
+    }
+
+    // One page of booking index results, resolved to bookings when fetched so
+    // painting never goes back to the index. Pages are looked up on a worker
+    // thread, since a broad search sorted by fare takes tens of milliseconds;
+    // only the newest request is shown. While bookings come in or change, the
+    // page is fetched again at most a few times a second, keeping the selected
+    // booking selected.
+    class BookingTableModel extends AbstractTableModel {
+        static final int PAGE_SIZE = 100;
+
+        private final String[] columns = {"--------Booking ID", "Cab ID", "Customer", "From", "To", "Fare",
+                "Status---------"};
+        private final AtomicBoolean refreshQueued = new AtomicBoolean();
+        private final Timer refreshTimer = new Timer(250, e -> reload());
+        private final ExecutorService pageLoader = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "booking-page");
+            t.setDaemon(true);
+            return t;
+        });
+        private final AtomicLong latestLoad = new AtomicLong();
+        private List<Booking> rows = new ArrayList<>();
+        private BookingIndex.Field field = BookingIndex.Field.CUSTOMER;
+        private String text = "";
+        private BookingIndex.Sort sort = BookingIndex.Sort.NEWEST;
+        private Runnable pageListener = () -> { };
+        int page, total;
+
+        BookingTableModel() {
+            refreshTimer.setRepeats(false);
+        }
+
+        void setPageListener(Runnable listener) {
+            this.pageListener = listener;
+        }
+
+        void search(BookingIndex.Field field, String text, BookingIndex.Sort sort) {
+            this.field = field;
+            this.text = text;
+            this.sort = sort;
+            page = 0;
+            reload();
+        }
+
+        void showPage(int page) {
+            this.page = Math.max(0, Math.min(page, pageCount() - 1));
+            reload();
+        }
+
+        int pageCount() {
+            return Math.max(1, (total + PAGE_SIZE - 1) / PAGE_SIZE);
+        }
+
+        // Called on the EDT; the page shows up once the worker has fetched it
+        void reload() {
+            if (pageLoader.isShutdown()) {
+                return;
+            }
+            long load = latestLoad.incrementAndGet();
+            BookingIndex.Field field = this.field;
+            String text = this.text;
+            BookingIndex.Sort sort = this.sort;
+            int page = this.page;
+            pageLoader.execute(() -> {
+                if (load != latestLoad.get()) {
+                    return; // superseded before it started
+                }
+                try {
+                    fetch(load, field, text, sort, page);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            });
+        }
+
+        void shutdown() {
+            pageLoader.shutdownNow();
+        }
+
+        // Worker thread
+        private void fetch(long load, BookingIndex.Field field, String text, BookingIndex.Sort sort, int page) {
+            BookingIndex.Page result = bookingIndex.query(field, text, sort, page * PAGE_SIZE, PAGE_SIZE);
+            if (result.bookingIds.isEmpty() && page > 0) {
+                // The page ran off the end, e.g. after a narrower search
+                page = Math.max(0, (result.total - 1) / PAGE_SIZE);
+                result = bookingIndex.query(field, text, sort, page * PAGE_SIZE, PAGE_SIZE);
+            }
+            List<Booking> fetched = new ArrayList<>(result.bookingIds.size());
+            for (String bookingId : result.bookingIds) {
+                Booking booking = store.findBooking(bookingId);
+                if (booking != null) {
+                    fetched.add(booking);
+                }
+            }
+            int shownPage = page;
+            int matched = result.total;
+            SwingUtilities.invokeLater(() -> {
+                if (load == latestLoad.get()) {
+                    show(fetched, shownPage, matched);
+                }
+            });
+        }
+
+        private void show(List<Booking> fetched, int shownPage, int matched) {
+            int selected = bookingTable == null ? -1 : bookingTable.getSelectedRow();
+            String selectedId = selected >= 0 && selected < rows.size() ? rows.get(selected).id : null;
+            rows = fetched;
+            page = shownPage;
+            total = matched;
+            fireTableDataChanged();
+            for (int i = 0; selectedId != null && i < rows.size(); i++) {
+                if (rows.get(i).id.equals(selectedId)) {
+                    bookingTable.setRowSelectionInterval(i, i);
+                }
+            }
+            pageListener.run();
+        }
+
+        // Callable from any thread
+        void bookingsChanged() {
+            if (refreshQueued.compareAndSet(false, true)) {
+                SwingUtilities.invokeLater(() -> {
+                    refreshQueued.set(false);
+                    if (!refreshTimer.isRunning()) {
+                        refreshTimer.start();
+                    }
+                });
+            }
+        }
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            Booking booking = rows.get(row);
+            switch (column) {
+                case 0: return booking.id;
+                case 1: return booking.cabId;
+                case 2: return booking.customer;
+                case 3: return booking.from;
+                case 4: return booking.to;
+                case 5: return "₹" + booking.fare;
+                case 6: return booking.status;
+                default: return null;
+            }
+        }
+    }
+
+    // Event bus consumer: collects a batch of store events into one table sync and one dashboard refresh
+    class UiUpdater implements EventBus.Handler {
+        private boolean cabsAdded, statusChanged;
+
+        @Override
+        public void onEvent(EventBus.Event event, boolean endOfBatch) {
+            switch (event.type) {
+                case CAB_ADDED:
+                    cabsAdded = true;
+                    break;
+                case STATUS_CHANGED:
+                    statusChanged = true;
+                    break;
+                default:
+                    break;
+            }
+            if (!endOfBatch) {
+                return;
+            }
+            if (cabsAdded) {
+                cabModel.rowsAppended();
+            }
+            if (statusChanged) {
+                bookingModel.bookingsChanged(); // new bookings come through the index instead
+            }
+            cabsAdded = false;
+            statusChanged = false;
+            updateDashboard();
         }
     }
 
     @Override
     public void dispose() {
-        // Stop the timer when closing the application
-        if (dashboardTimer != null) {
-            dashboardTimer.stop();
+        // Stop the background refresher and flush the journal when closing the application
+        if (simulator != null) {
+            simulator.stop();
         }
+        api.stop();
+        positions.shutdown();
+        evictor.shutdown();
+        dashboardRefresher.shutdown();
+        bookingModel.shutdown();
+        batchDispatcher.shutdown();
+        surgeTracker.shutdown();
+        eventBus.shutdown(); // drains the journal and writes its final snapshot
         super.dispose();
     }
 
     // -------------------- MAIN METHOD --------------------
-    public static void main(String[] args) {
+    // --api PORT also serves the booking API and --positions PORT takes cab GPS fixes over UDP;
+    // --headless serves only those (see BookingApi). --evict-after MINUTES sets how long finished
+    // bookings stay in memory before moving to the archive.
+    public static void main(String[] args) throws Exception {
+        int apiPort = -1;
+        int positionPort = -1;
+        long evictAfter = BookingEvictor.DEFAULT_WINDOW_MILLIS;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--headless")) {
+                List<String> rest = new ArrayList<>(List.of(args));
+                rest.remove(i);
+                BookingApi.main(rest.toArray(new String[0]));
+                return;
+            }
+            if (args[i].equals("--api")) {
+                apiPort = i + 1 < args.length ? Integer.parseInt(args[i + 1]) : BookingApi.DEFAULT_PORT;
+            }
+            if (args[i].equals("--evict-after") && i + 1 < args.length) {
+                evictAfter = (long) (Double.parseDouble(args[i + 1]) * 60_000);
+            }
+            if (args[i].equals("--positions")) {
+                positionPort = i + 1 < args.length ? Integer.parseInt(args[i + 1]) : BookingApi.DEFAULT_POSITION_PORT;
+            }
+        }
+        int port = apiPort;
+        int udpPort = positionPort;
+        long window = evictAfter;
         SwingUtilities.invokeLater(() -> {
             try {
                 UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
@@ -1010,7 +2009,15 @@ public class CabBookingSystemEnhanced extends JFrame {
             }
             
             CabBookingSystemEnhanced system = new CabBookingSystemEnhanced();
+            system.evictor.setWindowMillis(window);
+            system.evictor.start();
             system.setVisible(true);
+            if (port >= 0) {
+                system.startApi(port);
+            }
+            if (udpPort >= 0) {
+                system.startPositionIngest(udpPort);
+            }
         });
     }
 }
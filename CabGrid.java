@@ -0,0 +1,170 @@
+package in.java.main;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Uniform lat/lon grid of cabs for nearest-neighbour queries.
+ * <p>
+ * Each cell holds a copy-on-write array of the cabs currently inside it, so
+ * queries never lock and never see a half-updated cell. A k-nearest query
+ * walks square rings of cells outwards from the pickup and stops as soon as
+ * the next ring can't hold anything closer than the k-th best found so far.
+ */
+final class CabGrid {
+
+    private static final double CELL_DEG = 0.01; // roughly 1.1 km north-south
+    private static final int MAX_RING = 250;
+
+    private static final class Cell {
+        volatile Cab[] cabs = new Cab[0];
+
+        synchronized void add(Cab cab) {
+            Cab[] old = cabs;
+            Cab[] grown = Arrays.copyOf(old, old.length + 1);
+            grown[old.length] = cab;
+            cabs = grown;
+        }
+
+        synchronized void remove(Cab cab) {
+            Cab[] old = cabs;
+            for (int i = 0; i < old.length; i++) {
+                if (old[i] == cab) {
+                    Cab[] shrunk = new Cab[old.length - 1];
+                    System.arraycopy(old, 0, shrunk, 0, i);
+                    System.arraycopy(old, i + 1, shrunk, i, old.length - i - 1);
+                    cabs = shrunk;
+                    return;
+                }
+            }
+        }
+    }
+
+    private final Map<Long, Cell> cells = new ConcurrentHashMap<>();
+    private final Map<String, Long> cellOfCab = new ConcurrentHashMap<>();
+    // Bounding box of every cell ever used; rings beyond it can't hold cabs
+    private volatile int minX = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE;
+    private volatile int minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+
+    /**
+     * Files the cab under the cell for its current position, moving it if
+     * it was in another cell. Cabs without a position are dropped from the
+     * grid. Updates for one cab must come from one thread at a time.
+     */
+    void update(Cab cab) {
+        Long previous = cellOfCab.get(cab.id);
+        if (!cab.hasPosition()) {
+            if (previous != null) {
+                cells.get(previous).remove(cab);
+                cellOfCab.remove(cab.id);
+            }
+            return;
+        }
+        int x = cellX(cab.lon);
+        int y = cellY(cab.lat);
+        long key = key(x, y);
+        if (previous != null && previous == key) {
+            return;
+        }
+        growBounds(x, y);
+        cells.computeIfAbsent(key, k -> new Cell()).add(cab);
+        cellOfCab.put(cab.id, key);
+        if (previous != null) {
+            cells.get(previous).remove(cab);
+        }
+    }
+
+    /**
+     * Fills {@code out} with up to {@code out.length} cabs accepted by
+     * {@code filter}, nearest first, and returns how many were found.
+     */
+    int nearest(double lat, double lon, Predicate<Cab> filter, Cab[] out) {
+        if (maxX < minX) {
+            return 0; // nothing filed yet
+        }
+        int k = out.length;
+        double[] dist2 = new double[k];
+        int found = 0;
+        int cx = cellX(lon);
+        int cy = cellY(lat);
+        // Local flat-earth scale: km per degree along each axis; compare squared distances
+        double kmY = 111.2;
+        double kmX = 111.2 * Math.cos(Math.toRadians(lat));
+        // Anything in ring r is at least the gap to the edge of the pickup's
+        // own cell plus r - 1 whole cells away
+        double fx = lon / CELL_DEG - cx;
+        double fy = lat / CELL_DEG - cy;
+        double edgeKm = Math.min(Math.min(fx, 1 - fx) * kmX, Math.min(fy, 1 - fy) * kmY) * CELL_DEG;
+        double cellKm = Math.min(kmX, kmY) * CELL_DEG;
+        int lastRing = Math.min(MAX_RING, Math.max(Math.max(cx - minX, maxX - cx), Math.max(cy - minY, maxY - cy)));
+
+        for (int r = 0; r <= lastRing; r++) {
+            if (found == k && r > 0) {
+                double bound = edgeKm + (r - 1) * cellKm;
+                if (bound * bound > dist2[k - 1]) {
+                    break;
+                }
+            }
+            for (int dy = -r; dy <= r; dy++) {
+                // Full rows at the top and bottom edge, only the two ends in between
+                int step = (dy == -r || dy == r) ? 1 : Math.max(2 * r, 1);
+                for (int dx = -r; dx <= r; dx += step) {
+                    Cell cell = cells.get(key(cx + dx, cy + dy));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (Cab cab : cell.cabs) {
+                        double ex = (cab.lon - lon) * kmX;
+                        double ey = (cab.lat - lat) * kmY;
+                        double d2 = ex * ex + ey * ey;
+                        if (found == k && d2 >= dist2[k - 1]) {
+                            continue;
+                        }
+                        if (!filter.test(cab)) {
+                            continue;
+                        }
+                        // Insertion into the small sorted result arrays
+                        int i = found < k ? found++ : k - 1;
+                        while (i > 0 && dist2[i - 1] > d2) {
+                            dist2[i] = dist2[i - 1];
+                            out[i] = out[i - 1];
+                            i--;
+                        }
+                        dist2[i] = d2;
+                        out[i] = cab;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private synchronized void growBounds(int x, int y) {
+        if (x < minX) {
+            minX = x;
+        }
+        if (x > maxX) {
+            maxX = x;
+        }
+        if (y < minY) {
+            minY = y;
+        }
+        if (y > maxY) {
+            maxY = y;
+        }
+    }
+
+    private static int cellX(double lon) {
+        return (int) Math.floor(lon / CELL_DEG);
+    }
+
+    private static int cellY(double lat) {
+        return (int) Math.floor(lat / CELL_DEG);
+    }
+
+    private static long key(int x, int y) {
+        return ((long) y << 32) | (x & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,207 @@
+package in.java.main;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams the booking history to an RFC 4180 CSV file.
+ * <p>
+ * The set of rows is fixed when the export starts (archived rows plus the
+ * in-memory prefix at that instant), so bookings arriving meanwhile don't
+ * leak into a half-written file. Rows are encoded straight into one large
+ * buffer that is handed to the file channel when full. Output goes to a
+ * ".part" file that is only renamed into place once complete, so a
+ * cancelled or failed export never leaves a truncated file behind.
+ */
+final class CsvExporter {
+
+    static final String HEADER = "BookingID,CabID,Customer,From,To,Fare,Status,CreatedAt";
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int PROGRESS_EVERY = 16 * 1024;
+
+    /** Receives progress from the exporting thread. */
+    interface Progress {
+        void update(long rowsWritten, long totalRows);
+    }
+
+    private final BookingStore store;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    CsvExporter(BookingStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Writes the export to {@code target} and returns the number of rows.
+     *
+     * @throws CancellationException if {@code cancelled} turned true mid-way
+     */
+    long export(Path target, boolean gzip, Progress progress, BooleanSupplier cancelled) throws IOException {
+        BookingStore.BookingView view = store.bookingView();
+        BookingArchive archive = store.archive();
+        int archivedRows = view.archivedRows;
+        int hotRows = view.hot.size();
+        long total = (long) archivedRows + hotRows;
+
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+        boolean complete = false;
+        try (WritableByteChannel out = open(part, gzip)) {
+            buffer.clear();
+            field(out, HEADER, false);
+            endRow(out);
+
+            long written = 0;
+            for (int row = 0; row < archivedRows; row++) {
+                writeRow(out, archive.id(row), archive.cabId(row), archive.customer(row),
+                        archive.from(row), archive.to(row), archive.fare(row), archive.status(row),
+                        archive.createdAt(row));
+                tick(++written, total, progress, cancelled);
+            }
+            for (int i = 0; i < hotRows; i++) {
+                Booking b = view.hot.get(i);
+                writeRow(out, b.id, b.cabId, b.customer, b.from, b.to, b.fare, b.status, b.createdAt);
+                tick(++written, total, progress, cancelled);
+            }
+            flush(out);
+            progress.update(written, total);
+            complete = true;
+        } finally {
+            if (!complete) {
+                Files.deleteIfExists(part);
+            }
+        }
+        Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+        return total;
+    }
+
+    private static WritableByteChannel open(Path file, boolean gzip) throws IOException {
+        if (gzip) {
+            OutputStream raw = Files.newOutputStream(file);
+            return Channels.newChannel(new GZIPOutputStream(raw, 1 << 16));
+        }
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private static void tick(long written, long total, Progress progress, BooleanSupplier cancelled) {
+        if (written % PROGRESS_EVERY == 0) {
+            if (cancelled.getAsBoolean()) {
+                throw new CancellationException("Export cancelled");
+            }
+            progress.update(written, total);
+        }
+    }
+
+    // -------------------- ENCODING --------------------
+    private void writeRow(WritableByteChannel out, String id, String cabId, String customer,
+                          String from, String to, double fare, BookingStatus status, long createdAt)
+            throws IOException {
+        field(out, id, true);
+        comma(out);
+        field(out, cabId, true);
+        comma(out);
+        field(out, customer, true);
+        comma(out);
+        field(out, from, true);
+        comma(out);
+        field(out, to, true);
+        comma(out);
+        field(out, Double.toString(fare), false);
+        comma(out);
+        field(out, status.label, true);
+        comma(out);
+        if (createdAt != 0) {
+            field(out, Instant.ofEpochMilli(createdAt).toString(), false);
+        }
+        endRow(out);
+    }
+
+    private void comma(WritableByteChannel out) throws IOException {
+        ensure(out, 1);
+        buffer.put((byte) ',');
+    }
+
+    private void endRow(WritableByteChannel out) throws IOException {
+        ensure(out, 2);
+        buffer.put((byte) '\r').put((byte) '\n');
+    }
+
+    /** Writes one field as UTF-8, quoting it if it contains a comma, quote or line break. */
+    private void field(WritableByteChannel out, String value, boolean escape) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = escape && needsQuoting(value);
+        if (quote) {
+            ensure(out, 1);
+            buffer.put((byte) '"');
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            ensure(out, 4);
+            if (c < 0x80) {
+                if (quote && c == '"') {
+                    buffer.put((byte) '"');
+                }
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | (cp >> 18)));
+                buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (cp & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put((byte) '?'); // unpaired surrogate, not encodable
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        if (quote) {
+            ensure(out, 1);
+            buffer.put((byte) '"');
+        }
+    }
+
+    private static boolean needsQuoting(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void ensure(WritableByteChannel out, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush(out);
+        }
+    }
+
+    private void flush(WritableByteChannel out) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,411 @@
+package in.java.main;
+
+import java.io.BufferedWriter;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Bulk import of cabs or bookings from CSV.
+ * <p>
+ * The calling thread streams the file through an RFC 4180 parser and cuts
+ * it into chunks. Each chunk is validated on a worker pool sized to the
+ * machine, with the same rules as the "Add Cab" and "Book Cab" forms.
+ * Results are then inserted in file order, one store batch per chunk. At
+ * most a few chunks are in flight at once, so memory stays flat however
+ * large the file is. Rows that fail validation or collide with an
+ * existing id are written to an error report next to the input file
+ * instead of interrupting the import.
+ * <p>
+ * Cab files use {@code CabID,Driver,Location,Type,Fare}. Booking files use
+ * the export layout {@code BookingID,CabID,Customer,From,To,Fare,Status,CreatedAt},
+ * where Fare (defaults to a fresh quote for the route), Status (defaults to
+ * Assigned; older files' "Confirmed" means the same) and CreatedAt
+ * (ISO-8601 instant, defaults to now) may be left empty or omitted. A
+ * header row is detected and skipped.
+ */
+final class CsvImporter {
+
+    enum Kind { CABS, BOOKINGS }
+
+    /** Receives progress from the importing thread. */
+    interface Progress {
+        void update(long bytesRead, long totalBytes);
+    }
+
+    static final class Result {
+        final long imported;
+        final long rejected;
+        final Path errorReport; // null when every row was imported
+
+        Result(long imported, long rejected, Path errorReport) {
+            this.imported = imported;
+            this.rejected = rejected;
+            this.errorReport = errorReport;
+        }
+    }
+
+    private static final int CHUNK_ROWS = 8 * 1024;
+
+    private final BookingStore store;
+
+    CsvImporter(BookingStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Imports the file and returns what happened.
+     *
+     * @throws CancellationException if {@code cancelled} turned true mid-way;
+     *                               chunks inserted before that stay imported
+     */
+    Result importFile(Path file, Kind kind, Progress progress, BooleanSupplier cancelled) throws IOException {
+        long totalBytes = Files.size(file);
+        Path errorReport = file.resolveSibling(file.getFileName() + ".errors.csv");
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "csv-import");
+            t.setDaemon(true);
+            return t;
+        });
+        Deque<Future<Chunk>> inFlight = new ArrayDeque<>();
+        long imported = 0;
+        long rejected = 0;
+
+        try (CountingInputStream counted = new CountingInputStream(Files.newInputStream(file));
+             Reader reader = new InputStreamReader(counted, StandardCharsets.UTF_8);
+             BufferedWriter errors = Files.newBufferedWriter(errorReport, StandardCharsets.UTF_8)) {
+            errors.write("Line,Error,Record\r\n");
+            RecordReader records = new RecordReader(reader);
+            boolean first = true;
+            Chunk chunk = new Chunk();
+            String[] record;
+            while ((record = records.next()) != null) {
+                if (first) {
+                    first = false;
+                    if (isHeader(record)) {
+                        continue;
+                    }
+                }
+                chunk.add(record, records.recordLine());
+                if (chunk.size() == CHUNK_ROWS) {
+                    Chunk full = chunk;
+                    inFlight.add(pool.submit(() -> validate(full, kind)));
+                    chunk = new Chunk();
+                    // Keep a bounded window of chunks in flight; insert in file order
+                    while (inFlight.size() >= threads * 2) {
+                        long[] counts = insert(await(inFlight.poll()), kind, errors);
+                        imported += counts[0];
+                        rejected += counts[1];
+                    }
+                    if (cancelled.getAsBoolean()) {
+                        throw new CancellationException("Import cancelled");
+                    }
+                    progress.update(counted.count, totalBytes);
+                }
+            }
+            if (chunk.size() > 0) {
+                Chunk last = chunk;
+                inFlight.add(pool.submit(() -> validate(last, kind)));
+            }
+            while (!inFlight.isEmpty()) {
+                long[] counts = insert(await(inFlight.poll()), kind, errors);
+                imported += counts[0];
+                rejected += counts[1];
+            }
+            progress.update(totalBytes, totalBytes);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        if (rejected == 0) {
+            Files.deleteIfExists(errorReport);
+            errorReport = null;
+        }
+        return new Result(imported, rejected, errorReport);
+    }
+
+    private static boolean isHeader(String[] record) {
+        String firstField = record[0].trim();
+        return firstField.equalsIgnoreCase("CabID") || firstField.equalsIgnoreCase("Cab ID")
+                || firstField.equalsIgnoreCase("BookingID") || firstField.equalsIgnoreCase("Booking ID");
+    }
+
+    private static Chunk await(Future<Chunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Import interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Validation failed", e.getCause());
+        }
+    }
+
+    // -------------------- VALIDATION (worker threads) --------------------
+    private Chunk validate(Chunk chunk, Kind kind) {
+        for (int i = 0; i < chunk.size(); i++) {
+            String[] r = chunk.records.get(i);
+            try {
+                if (kind == Kind.CABS) {
+                    chunk.cabs.add(parseCab(r));
+                } else {
+                    chunk.bookings.add(parseBooking(r));
+                }
+                chunk.validRows.add(i);
+            } catch (IllegalArgumentException e) {
+                chunk.fail(i, e.getMessage());
+            }
+        }
+        return chunk;
+    }
+
+    private static Cab parseCab(String[] r) {
+        if (r.length < 5 || blank(r[0]) || blank(r[1]) || blank(r[2]) || blank(r[3]) || blank(r[4])) {
+            throw new IllegalArgumentException("Please fill all fields!");
+        }
+        return new Cab(r[0].trim(), r[1].trim(), r[2].trim(), r[3].trim(), parseFare(r[4]));
+    }
+
+    private Booking parseBooking(String[] r) {
+        if (r.length < 5 || blank(r[0]) || blank(r[1]) || blank(r[2]) || blank(r[3]) || blank(r[4])) {
+            throw new IllegalArgumentException("Please fill all fields!");
+        }
+        Cab cab = store.findCab(r[1].trim());
+        if (cab == null) {
+            throw new IllegalArgumentException("Cab not found! Please check the Cab ID.");
+        }
+        double fare = r.length > 5 && !blank(r[5]) ? parseFare(r[5]) : store.quote(cab, r[3].trim(), r[4].trim());
+        Booking booking = new Booking(r[0].trim(), cab.id, r[2].trim(), r[3].trim(), r[4].trim(), fare);
+        if (r.length > 6 && !blank(r[6])) {
+            booking.status = BookingStatus.parse(r[6]);
+        }
+        if (r.length > 7 && !blank(r[7])) {
+            try {
+                booking.createdAt = Instant.parse(r[7].trim()).toEpochMilli();
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid booking time, expected e.g. 2024-05-01T08:30:00Z");
+            }
+        }
+        return booking;
+    }
+
+    private static double parseFare(String value) {
+        try {
+            return Double.parseDouble(value.trim().replace("₹", ""));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Please enter a valid fare amount!");
+        }
+    }
+
+    private static boolean blank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    // -------------------- INSERT (importing thread) --------------------
+    private long[] insert(Chunk chunk, Kind kind, BufferedWriter errors) throws IOException {
+        List<?> valid = kind == Kind.CABS ? chunk.cabs : chunk.bookings;
+        List<?> rejected = kind == Kind.CABS ? store.addCabs(chunk.cabs) : store.addBookings(chunk.bookings);
+        if (!rejected.isEmpty()) {
+            Map<Object, Integer> rows = new IdentityHashMap<>();
+            for (int i = 0; i < valid.size(); i++) {
+                rows.put(valid.get(i), chunk.validRows.get(i));
+            }
+            for (Object duplicate : rejected) {
+                int row = rows.get(duplicate);
+                writeError(errors, chunk.lines[row], "Duplicate ID " + chunk.records.get(row)[0].trim(),
+                        chunk.records.get(row));
+            }
+        }
+        for (int i = 0; i < chunk.failedRows.size(); i++) {
+            int row = chunk.failedRows.get(i);
+            writeError(errors, chunk.lines[row], chunk.failures.get(i), chunk.records.get(row));
+        }
+        long bad = chunk.failedRows.size() + rejected.size();
+        return new long[]{valid.size() - rejected.size(), bad};
+    }
+
+    private static void writeError(BufferedWriter errors, long line, String message, String[] record)
+            throws IOException {
+        errors.write(Long.toString(line));
+        errors.write(',');
+        errors.write(quote(message));
+        errors.write(',');
+        errors.write(quote(String.join(",", record)));
+        errors.write("\r\n");
+    }
+
+    private static String quote(String value) {
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /** A slice of the file: raw records, their line numbers and, once validated, the parsed rows. */
+    private static final class Chunk {
+        final List<String[]> records = new ArrayList<>(CHUNK_ROWS);
+        final long[] lines = new long[CHUNK_ROWS];
+        final List<Cab> cabs = new ArrayList<>();
+        final List<Booking> bookings = new ArrayList<>();
+        final List<Integer> validRows = new ArrayList<>(CHUNK_ROWS);
+        final List<Integer> failedRows = new ArrayList<>();
+        final List<String> failures = new ArrayList<>();
+
+        void add(String[] record, long line) {
+            lines[records.size()] = line;
+            records.add(record);
+        }
+
+        int size() {
+            return records.size();
+        }
+
+        void fail(int row, String message) {
+            failedRows.add(row);
+            failures.add(message);
+        }
+    }
+
+    // -------------------- PARSING --------------------
+    /**
+     * Minimal streaming RFC 4180 reader: comma separated, fields optionally
+     * quoted, quotes doubled inside quoted fields, which may span lines.
+     */
+    static final class RecordReader {
+        private final Reader in;
+        private final char[] buffer = new char[1 << 16];
+        private final StringBuilder field = new StringBuilder();
+        private int pos;
+        private int limit;
+        private long line = 1;
+        private long recordLine;
+
+        RecordReader(Reader in) {
+            this.in = in;
+        }
+
+        /** Line on which the last returned record started. */
+        long recordLine() {
+            return recordLine;
+        }
+
+        /** Next record, or null at end of input. Blank lines are skipped. */
+        String[] next() throws IOException {
+            List<String> fields = new ArrayList<>();
+            field.setLength(0);
+            boolean quoted = false;
+            boolean any = false;
+            recordLine = line;
+            int c;
+            while ((c = read()) != -1) {
+                any = true;
+                if (quoted) {
+                    if (c == '"') {
+                        if (peek() == '"') {
+                            read();
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        if (c == '\n') {
+                            line++;
+                        }
+                        field.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\r' || c == '\n') {
+                    if (c == '\r' && peek() == '\n') {
+                        read();
+                    }
+                    line++;
+                    if (fields.isEmpty() && field.length() == 0) {
+                        recordLine = line; // blank line
+                        any = false;
+                        continue;
+                    }
+                    fields.add(field.toString());
+                    return fields.toArray(new String[0]);
+                } else {
+                    field.append((char) c);
+                }
+            }
+            if (!any && fields.isEmpty() && field.length() == 0) {
+                return null;
+            }
+            fields.add(field.toString());
+            return fields.toArray(new String[0]);
+        }
+
+        private int read() throws IOException {
+            if (pos == limit && !fill()) {
+                return -1;
+            }
+            return buffer[pos++];
+        }
+
+        private int peek() throws IOException {
+            if (pos == limit && !fill()) {
+                return -1;
+            }
+            return buffer[pos];
+        }
+
+        private boolean fill() throws IOException {
+            int n = in.read(buffer, 0, buffer.length);
+            if (n <= 0) {
+                return false;
+            }
+            pos = 0;
+            limit = n;
+            return true;
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package in.java.main;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals behind the dashboard, quick report and analytics views.
+ * Fed by add-cab, add-booking and status-change events so every read is
+ * O(1) no matter how long the booking history gets. Cancelled bookings
+ * earn nothing, so they drop out of the revenue. Revenue is summed in
+ * whole paise, so it comes out exact whatever order fares arrive in.
+ */
+class DashboardAggregates {
+
+    private final LongAdder totalCabs = new LongAdder();
+    private final Map<String, LongAdder> cabsByType = new ConcurrentHashMap<>();
+    private final LongAdder totalBookings = new LongAdder();
+    private final LongAdder onTripBookings = new LongAdder();
+    private final LongAdder completedBookings = new LongAdder();
+    private final LongAdder cancelledBookings = new LongAdder();
+    private final LongAdder revenuePaise = new LongAdder();
+
+    void onCabAdded(String type) {
+        totalCabs.increment();
+        cabsByType.computeIfAbsent(type, t -> new LongAdder()).increment();
+    }
+
+    void onBookingAdded(double fare, BookingStatus status) {
+        totalBookings.increment();
+        if (status == BookingStatus.CANCELLED) {
+            cancelledBookings.increment();
+        } else {
+            revenuePaise.add(Math.round(fare * 100));
+            if (status == BookingStatus.ON_TRIP) {
+                onTripBookings.increment();
+            } else if (status == BookingStatus.COMPLETED) {
+                completedBookings.increment();
+            }
+        }
+    }
+
+    // Transitions only ever go forward, so each one moves a booking into at most one final bucket
+    void onStatusChanged(double fare, BookingStatus oldStatus, BookingStatus newStatus) {
+        if (oldStatus == newStatus) {
+            return;
+        }
+        if (oldStatus == BookingStatus.ON_TRIP) {
+            onTripBookings.decrement();
+        }
+        if (newStatus == BookingStatus.ON_TRIP) {
+            onTripBookings.increment();
+        } else if (newStatus == BookingStatus.COMPLETED) {
+            completedBookings.increment();
+        } else if (newStatus == BookingStatus.CANCELLED) {
+            cancelledBookings.increment();
+            revenuePaise.add(-Math.round(fare * 100));
+        }
+    }
+
+    long totalCabs() {
+        return totalCabs.sum();
+    }
+
+    long cabsOfType(String type) {
+        LongAdder count = cabsByType.get(type);
+        return count == null ? 0 : count.sum();
+    }
+
+    long totalBookings() {
+        return totalBookings.sum();
+    }
+
+    long completedBookings() {
+        return completedBookings.sum();
+    }
+
+    long cancelledBookings() {
+        return cancelledBookings.sum();
+    }
+
+    long activeBookings() {
+        return totalBookings() - completedBookings() - cancelledBookings();
+    }
+
+    /** Active bookings whose trip hasn't started. */
+    long assignedBookings() {
+        return activeBookings() - onTripBookings();
+    }
+
+    long onTripBookings() {
+        return onTripBookings.sum();
+    }
+
+    double totalRevenue() {
+        return revenuePaise.sum() / 100.0;
+    }
+
+    double averageFare() {
+        return totalRevenue() / Math.max(totalBookings() - cancelledBookings(), 1);
+    }
+}
@@ -0,0 +1,78 @@
+package in.java.main;
+
+import javax.swing.SwingUtilities;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+/**
+ * Background pipeline that builds {@link DashboardSnapshot}s on a worker
+ * thread and publishes them to Swing with a single invokeLater.
+ * <p>
+ * Refresh requests that arrive while one is already queued are coalesced
+ * into it, and a snapshot that reaches the EDT after a newer one has been
+ * computed is dropped.
+ */
+class DashboardRefresher {
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "dashboard-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+    private final LongFunction<DashboardSnapshot> snapshotter;
+    private final Consumer<DashboardSnapshot> publisher;
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private final AtomicLong latestSequence = new AtomicLong();
+
+    /**
+     * @param snapshotter builds a snapshot for the given sequence number; runs off the EDT
+     * @param publisher   applies a snapshot to the UI; always called on the EDT
+     */
+    DashboardRefresher(LongFunction<DashboardSnapshot> snapshotter, Consumer<DashboardSnapshot> publisher) {
+        this.snapshotter = snapshotter;
+        this.publisher = publisher;
+    }
+
+    void start(long periodMillis) {
+        executor.scheduleWithFixedDelay(this::requestRefresh, 0, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Safe to call from any thread; a no-op if a refresh is already queued. */
+    void requestRefresh() {
+        if (pending.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::refresh);
+            } catch (RejectedExecutionException e) {
+                pending.set(false); // shut down meanwhile; nothing left to refresh
+            }
+        }
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void refresh() {
+        // Clear first so a change made while we compute schedules another pass
+        pending.set(false);
+        long sequence = latestSequence.incrementAndGet();
+        DashboardSnapshot snapshot;
+        try {
+            snapshot = snapshotter.apply(sequence);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            return;
+        }
+        SwingUtilities.invokeLater(() -> {
+            if (snapshot.sequence == latestSequence.get()) {
+                publisher.accept(snapshot);
+            }
+        });
+    }
+}
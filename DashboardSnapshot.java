@@ -0,0 +1,31 @@
+package in.java.main;
+
+/**
+ * Immutable view of the dashboard numbers, computed off the EDT and handed
+ * to Swing in one piece so the labels never show a half-updated state.
+ */
+final class DashboardSnapshot {
+
+    final long sequence;
+    final long totalCabs;
+    final long activeBookings;
+    final long availableCabs;
+    final double totalRevenue;
+    final double dispatchPerSecond;
+    final double dispatchP99Millis;
+    final SurgeTracker.Reading surge;
+
+    DashboardSnapshot(long sequence, long totalCabs, long activeBookings,
+                      long availableCabs, double totalRevenue,
+                      double dispatchPerSecond, double dispatchP99Millis,
+                      SurgeTracker.Reading surge) {
+        this.sequence = sequence;
+        this.totalCabs = totalCabs;
+        this.activeBookings = activeBookings;
+        this.availableCabs = availableCabs;
+        this.totalRevenue = totalRevenue;
+        this.dispatchPerSecond = dispatchPerSecond;
+        this.dispatchP99Millis = dispatchP99Millis;
+        this.surge = surge;
+    }
+}
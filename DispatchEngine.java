@@ -0,0 +1,98 @@
+package in.java.main;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Picks cabs for a pickup point: the nearest free cabs, optionally of one
+ * type, found through a {@link CabGrid} kept in step with the store.
+ * <p>
+ * Auto-assignment books the nearest candidate through
+ * {@link BookingStore#bookIfFree}; if another thread grabbed that cab in the
+ * meantime it simply moves on to the next one.
+ */
+class DispatchEngine implements BookingStore.Listener {
+
+    private static final int CANDIDATES = 8;
+
+    /** Outcome of an auto-assignment; {@code cab} is set only when booked. */
+    static final class Assignment {
+        final BookingStore.BookResult result;
+        final Cab cab;
+
+        Assignment(BookingStore.BookResult result, Cab cab) {
+            this.result = result;
+            this.cab = cab;
+        }
+    }
+
+    private final BookingStore store;
+    private final CabGrid grid = new CabGrid();
+    private volatile SurgeTracker surge;
+
+    DispatchEngine(BookingStore store) {
+        this.store = store;
+        store.addListener(this);
+        for (Cab cab : store.cabs()) {
+            grid.update(cab);
+        }
+    }
+
+    @Override
+    public void cabAdded(Cab cab) {
+        grid.update(cab);
+    }
+
+    /** Keeps the tracker's free-cab counts per zone in step with cab moves. */
+    void setSurgeTracker(SurgeTracker surge) {
+        this.surge = surge;
+    }
+
+    /** Re-files a cab after its position changed. */
+    void cabMoved(Cab cab) {
+        grid.update(cab);
+        SurgeTracker tracker = surge;
+        if (tracker != null) {
+            tracker.cabMoved(cab);
+        }
+    }
+
+    /**
+     * Returns up to {@code k} free cabs nearest to the point, closest first.
+     * {@code type} restricts the search to one cab type; null means any.
+     */
+    List<Cab> nearestFree(double lat, double lon, int k, String type) {
+        if (store.availability().availableCount() == 0) {
+            return List.of();
+        }
+        Cab[] out = new Cab[k];
+        int found = grid.nearest(lat, lon, cab -> (type == null || type.equalsIgnoreCase(cab.type))
+                && store.availability().isAvailable(cab.id), out);
+        return Arrays.asList(out).subList(0, found);
+    }
+
+    /**
+     * Books the nearest free cab (of {@code type}, if given) for a pickup at
+     * {@code from}. Returns NO_SUCH_CAB when no free cab could be found.
+     */
+    Assignment assign(String bookingId, String customer, String from, String to, String type) {
+        double[] pickup = Places.resolve(from);
+        if (pickup == null) {
+            return new Assignment(BookingStore.BookResult.NO_SUCH_CAB, null);
+        }
+        // Candidates can be taken by other threads between the query and the booking
+        for (int attempt = 0; attempt < 3; attempt++) {
+            List<Cab> candidates = nearestFree(pickup[0], pickup[1], CANDIDATES, type);
+            if (candidates.isEmpty()) {
+                break;
+            }
+            for (Cab cab : candidates) {
+                BookingStore.BookResult result = store.bookIfFree(bookingId, cab.id, customer, from, to);
+                if (result != BookingStore.BookResult.CAB_BUSY) {
+                    return new Assignment(result, result == BookingStore.BookResult.BOOKED ? cab : null);
+                }
+            }
+        }
+        return new Assignment(BookingStore.BookResult.NO_SUCH_CAB, null);
+    }
+}
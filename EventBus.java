@@ -0,0 +1,235 @@
+package in.java.main;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fans store mutations out to independent consumers through one ring
+ * buffer, Disruptor-style.
+ * <p>
+ * A producer (whichever thread mutated the store) claims a sequence number
+ * with one atomic increment, fills the preallocated slot for it and marks
+ * it published. Each consumer runs on its own thread with its own read
+ * sequence and takes everything published since its last pass as one
+ * batch, so a slow consumer (the journal waiting on fsync) just batches
+ * more instead of holding up a fast one (the tables). The ring is bounded:
+ * a producer that would lap the slowest consumer waits for it, which is
+ * the back-pressure. Nothing is allocated per event.
+ * <p>
+ * Handlers run on their consumer thread and must copy whatever they keep
+ * from an {@link Event}; the slot is reused on the next lap.
+ */
+final class EventBus implements BookingStore.Listener {
+
+    static final int DEFAULT_CAPACITY = 64 * 1024;
+    private static final int MAX_BATCH = 4 * 1024;
+    private static final long IDLE_PARK_NANOS = 500_000;
+    private static final long FULL_PARK_NANOS = 10_000;
+
+    enum Type { CAB_ADDED, BOOKING_CREATED, STATUS_CHANGED }
+
+    /**
+     * One ring slot. {@code cab} is set for CAB_ADDED, {@code booking}
+     * otherwise. {@code status} is the booking's status as of the event:
+     * the one it was created with, or the one it moved to. By the time a
+     * consumer looks, {@code booking.status} may have moved further.
+     */
+    static final class Event {
+        Type type;
+        Cab cab;
+        Booking booking;
+        BookingStatus previous; // STATUS_CHANGED only
+        BookingStatus status;
+    }
+
+    /** Consumes events on its own thread. */
+    interface Handler {
+        /** {@code endOfBatch} marks the last event available for now: the time to flush. */
+        void onEvent(Event event, boolean endOfBatch) throws Exception;
+
+        /** Called once on the consumer thread after the final events were handled. */
+        default void onShutdown() { }
+    }
+
+    private final Event[] ring;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong(-1);
+    // Slot -> sequence last published into it
+    private final AtomicLongArray published;
+    private final List<Consumer> consumers = new CopyOnWriteArrayList<>();
+    // Lower bound on every consumer's sequence, so most publishes skip the scan
+    private volatile long gatingCache = -1;
+    private volatile boolean running = true;
+    // Producers between their running check and finishing their publish
+    private final AtomicInteger publishing = new AtomicInteger();
+    // Last sequence consumers must handle before exiting; set once no producer can claim more
+    private volatile long drainTo = Long.MAX_VALUE;
+
+    EventBus(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        ring = new Event[capacity];
+        published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new Event();
+            published.set(i, -1);
+        }
+        mask = capacity - 1;
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "event-bus-shutdown"));
+    }
+
+    /**
+     * Starts a consumer thread that sees every event published after this
+     * call. Subscribe while the store is quiet, e.g. during startup.
+     */
+    void subscribe(String name, Handler handler) {
+        Consumer consumer = new Consumer(name, handler, claimed.get());
+        consumers.add(consumer);
+        consumer.thread.start();
+    }
+
+    /**
+     * Stops taking events, waits for producers already past the check to
+     * finish publishing, lets every consumer drain all of it and run its
+     * {@link Handler#onShutdown}, and waits for them. Idempotent.
+     */
+    synchronized void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        // A producer either saw running == false or is counted here; consumers
+        // keep draining meanwhile, so one parked on a full ring gets through
+        while (publishing.get() > 0) {
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+        drainTo = claimed.get();
+        for (Consumer consumer : consumers) {
+            try {
+                consumer.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    /** Events published but not yet handled by the slowest consumer. */
+    long backlog() {
+        long last = claimed.get();
+        return last - minimumSequence(last);
+    }
+
+    @Override
+    public void cabAdded(Cab cab) {
+        publish(Type.CAB_ADDED, cab, null, null, null);
+    }
+
+    @Override
+    public void bookingAdded(Booking booking) {
+        // The store announces a booking before letting its status change, so this is still the initial one
+        publish(Type.BOOKING_CREATED, null, booking, null, booking.status);
+    }
+
+    @Override
+    public void statusChanged(Booking booking, BookingStatus previous, BookingStatus next) {
+        publish(Type.STATUS_CHANGED, null, booking, previous, next);
+    }
+
+    // -------------------- PRODUCER SIDE --------------------
+    private void publish(Type type, Cab cab, Booking booking, BookingStatus previous, BookingStatus status) {
+        publishing.incrementAndGet();
+        try {
+            if (running) {
+                claimAndPublish(type, cab, booking, previous, status);
+            }
+        } finally {
+            publishing.decrementAndGet();
+        }
+    }
+
+    private void claimAndPublish(Type type, Cab cab, Booking booking, BookingStatus previous, BookingStatus status) {
+        long sequence = claimed.incrementAndGet();
+        // The slot still holds the event from one lap ago until every consumer is past it
+        long wrapPoint = sequence - ring.length;
+        if (wrapPoint > gatingCache) {
+            long gating;
+            while (wrapPoint > (gating = minimumSequence(sequence))) {
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+            }
+            gatingCache = gating;
+        }
+        Event event = ring[(int) sequence & mask];
+        event.type = type;
+        event.cab = cab;
+        event.booking = booking;
+        event.previous = previous;
+        event.status = status;
+        published.set((int) sequence & mask, sequence);
+    }
+
+    private long minimumSequence(long ceiling) {
+        long min = ceiling;
+        for (Consumer consumer : consumers) {
+            min = Math.min(min, consumer.sequence.get());
+        }
+        return min;
+    }
+
+    // -------------------- CONSUMER SIDE --------------------
+    private final class Consumer implements Runnable {
+        final Handler handler;
+        final AtomicLong sequence; // last event handled
+        final Thread thread;
+
+        Consumer(String name, Handler handler, long start) {
+            this.handler = handler;
+            this.sequence = new AtomicLong(start);
+            this.thread = new Thread(this, "event-bus-" + name);
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            long next = sequence.get() + 1;
+            while (true) {
+                long last = highestPublished(next, next + MAX_BATCH - 1);
+                if (last < next) {
+                    if (next > drainTo) {
+                        break; // drained
+                    }
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+                for (long s = next; s <= last; s++) {
+                    try {
+                        handler.onEvent(ring[(int) s & mask], s == last);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+                sequence.lazySet(last);
+                next = last + 1;
+            }
+            try {
+                handler.onShutdown();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+
+        // Publication can finish out of order across producers, so stop at the first gap
+        private long highestPublished(long from, long to) {
+            long s = from;
+            while (s <= to && published.get((int) s & mask) == s) {
+                s++;
+            }
+            return s - 1;
+        }
+    }
+}
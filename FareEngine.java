@@ -0,0 +1,151 @@
+package in.java.main;
+
+import java.util.TimeZone;
+
+/**
+ * Prices a trip from its route distance, the cab's type and base fare, the
+ * time of day and the current surge multiplier:
+ * <pre>
+ *   fare = (cab base fare + per-km rate(type) * road km) * time-of-day * surge
+ * </pre>
+ * Road distance is estimated from the straight-line distance between the
+ * resolved endpoints times a detour factor. Routes whose endpoints can't be
+ * resolved cost the base fare.
+ * <p>
+ * Pickup/drop-off pairs repeat constantly, so resolved routes are kept in a
+ * small set-associative cache with LRU replacement inside each set. A
+ * cache hit only compares the two strings against the cached ones and does
+ * arithmetic: no allocation and no locking.
+ */
+class FareEngine implements BookingStore.Pricing {
+
+    /** Supplies the surge multiplier for a pickup point. */
+    interface SurgeSource {
+        double multiplierAt(double lat, double lon);
+    }
+
+    private static final double DETOUR_FACTOR = 1.3;
+    private static final double PEAK_MULTIPLIER = 1.25;
+    private static final double NIGHT_MULTIPLIER = 1.2;
+
+    private static final int WAYS = 4;
+    private static final int SETS = 1024; // power of two
+
+    /** Immutable cache entry; final fields make it safe to publish through the plain array. */
+    private static final class Route {
+        final String from, to;
+        final double km;
+        final double pickupLat, pickupLon;
+
+        Route(String from, String to, double km, double pickupLat, double pickupLon) {
+            this.from = from;
+            this.to = to;
+            this.km = km;
+            this.pickupLat = pickupLat;
+            this.pickupLon = pickupLon;
+        }
+    }
+
+    private final Route[] routes = new Route[SETS * WAYS];
+    // Racy last-use stamps; a lost update only makes eviction slightly less exact
+    private final long[] lastUsed = new long[SETS * WAYS];
+    private long clock;
+
+    private final TimeZone zone = TimeZone.getDefault();
+    private volatile SurgeSource surge = (lat, lon) -> 1.0;
+
+    void setSurgeSource(SurgeSource surge) {
+        this.surge = surge;
+    }
+
+    @Override
+    public double fare(Cab cab, String from, String to) {
+        return quote(cab.type, cab.fare, from, to, System.currentTimeMillis());
+    }
+
+    /** Fare for a trip starting at {@code epochMillis}, rounded to the paisa. */
+    double quote(String type, double baseFare, String from, String to, long epochMillis) {
+        Route route = route(from, to);
+        double fare = baseFare;
+        double surgeMultiplier = 1.0;
+        if (route != null) {
+            fare += perKmRate(type) * route.km;
+            surgeMultiplier = surge.multiplierAt(route.pickupLat, route.pickupLon);
+        }
+        fare *= timeOfDayMultiplier(epochMillis) * surgeMultiplier;
+        return Math.round(fare * 100) / 100.0;
+    }
+
+    /** Estimated road distance in km, or NaN if either end can't be resolved. */
+    double routeKm(String from, String to) {
+        Route route = route(from, to);
+        return route == null ? Double.NaN : route.km;
+    }
+
+    private static double perKmRate(String type) {
+        if (type == null) {
+            return 12;
+        }
+        switch (type) {
+            case "SUV":
+                return 18;
+            case "Hatchback":
+                return 9;
+            default:
+                return 12; // Sedan and anything unlisted
+        }
+    }
+
+    private double timeOfDayMultiplier(long epochMillis) {
+        long local = epochMillis + zone.getOffset(epochMillis);
+        int hour = (int) Math.floorMod(local / 3_600_000L, 24L);
+        if ((hour >= 8 && hour < 10) || (hour >= 17 && hour < 19)) {
+            return PEAK_MULTIPLIER;
+        }
+        if (hour >= 22 || hour < 5) {
+            return NIGHT_MULTIPLIER;
+        }
+        return 1.0;
+    }
+
+    // -------------------- ROUTE CACHE --------------------
+    private Route route(String from, String to) {
+        if (from == null || to == null) {
+            return null;
+        }
+        int hash = from.hashCode() * 31 + to.hashCode();
+        hash ^= hash >>> 16;
+        int base = (hash & (SETS - 1)) * WAYS;
+        for (int i = base; i < base + WAYS; i++) {
+            Route route = routes[i];
+            if (route != null && route.from.equals(from) && route.to.equals(to)) {
+                lastUsed[i] = ++clock;
+                return route;
+            }
+        }
+        return load(from, to, base);
+    }
+
+    private Route load(String from, String to, int base) {
+        double[] a = Places.resolve(from);
+        double[] b = Places.resolve(to);
+        if (a == null || b == null) {
+            return null; // not cached: unresolvable text is rare and may be a typo being fixed
+        }
+        double km = Places.distanceKm(a[0], a[1], b[0], b[1]) * DETOUR_FACTOR;
+        Route route = new Route(from, to, km, a[0], a[1]);
+        int victim = base;
+        for (int i = base; i < base + WAYS; i++) {
+            if (routes[i] == null) {
+                victim = i;
+                break;
+            }
+            if (lastUsed[i] < lastUsed[victim]) {
+                victim = i;
+            }
+        }
+        routes[victim] = route;
+        lastUsed[victim] = ++clock;
+        return route;
+    }
+}
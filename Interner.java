@@ -0,0 +1,41 @@
+package in.java.main;
+
+/**
+ * Shares one copy of text that repeats across bookings and cabs: places,
+ * cab ids, cab types and regular customers.
+ * <p>
+ * Every booking loaded from the journal, an import or the API arrives with
+ * its own fresh strings, and those copies used to be most of a booking's
+ * heap. This is a fixed-size, direct-mapped cache: a value takes the slot
+ * its hash picks, and a later equal value gets the cached copy back. Values
+ * that never repeat (coordinates, one-off names) just pass through and get
+ * overwritten, so the cache can't grow or pin memory. A shared reference
+ * costs the same 4 bytes as a dictionary code would, so the hot tier keeps
+ * plain strings and only the archive stores codes.
+ * <p>
+ * Slots are read and written without locking; strings are immutable, so a
+ * racing reader sees either copy, and both are equal.
+ */
+final class Interner {
+
+    private static final int SLOTS = 1 << 16;
+    private static final String[] CACHE = new String[SLOTS];
+
+    private Interner() {
+    }
+
+    /** An equal string, shared with earlier callers where possible; null stays null. */
+    static String canonical(String value) {
+        if (value == null) {
+            return null;
+        }
+        int h = value.hashCode();
+        int slot = (h ^ (h >>> 16)) & (SLOTS - 1);
+        String cached = CACHE[slot];
+        if (value.equals(cached)) {
+            return cached;
+        }
+        CACHE[slot] = value;
+        return value;
+    }
+}
@@ -0,0 +1,406 @@
+package in.java.main;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless traffic for soak and load tests: seeds a fleet, wanders the
+ * free cabs around and sends ride requests at fixed rates through the real
+ * dispatcher, then drives every booked trip through its lifecycle (start
+ * after a pickup delay, complete after the ride, or cancel).
+ * <p>
+ * A driver tick every {@link #TICK_MILLIS} ms works out how many requests
+ * and moves are owed at the configured rates and splits them across the
+ * worker threads, so the rate holds whatever the tick jitter. Latency is
+ * measured from submit to the dispatcher's answer and kept in a
+ * log-linear histogram. Runs from the UI or standalone through
+ * {@link #main}.
+ */
+final class LoadSimulator {
+
+    private static final long TICK_MILLIS = 10;
+    // Don't try to catch up more than this much of a stall in one tick
+    private static final long MAX_CATCH_UP_NANOS = 200_000_000L;
+    private static final String[] TYPES = {"Sedan", "SUV", "Hatchback"};
+    private static final double[] BASE_FARES = {150, 250, 100};
+    private static final double SPREAD_DEG = 0.02; // about 2 km around a landmark
+    private static final double STEP_DEG = 0.001; // about 100 m per move
+
+    /** Knobs for one run. */
+    static final class Config {
+        int cabs = 2_000;
+        double requestsPerSecond = 500;
+        double movesPerSecond = 2_000;
+        double cancelRatio = 0.1;
+        long pickupMillis = 2_000;
+        long tripMillis = 8_000; // mean; each trip takes 0.5x to 1.5x
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+    }
+
+    private final BookingStore store;
+    private final DispatchEngine engine;
+    private final BatchDispatcher dispatcher;
+    private final Config config;
+    private final String runId = Long.toString(System.currentTimeMillis() % 1_000_000, 36).toUpperCase();
+    private final List<Cab> fleet = new ArrayList<>();
+    private final AtomicLong nextBooking = new AtomicLong();
+    private final ScheduledExecutorService executor;
+    private ScheduledFuture<?> driver;
+    private volatile boolean running;
+
+    // Driver-thread only
+    private long startNanos;
+    private long requestsIssued, movesIssued;
+
+    private volatile long stopNanos;
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder booked = new LongAdder();
+    private final LongAdder noCab = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder moves = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    LoadSimulator(BookingStore store, DispatchEngine engine, BatchDispatcher dispatcher, Config config) {
+        this.store = store;
+        this.engine = engine;
+        this.dispatcher = dispatcher;
+        this.config = config;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newScheduledThreadPool(config.threads, r -> {
+            Thread t = new Thread(r, "load-simulator-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Seeds the fleet and starts generating traffic. A simulator runs once. */
+    synchronized void start() {
+        if (running || driver != null) {
+            throw new IllegalStateException("Simulator already started");
+        }
+        List<Cab> cabs = new ArrayList<>(config.cabs);
+        String[] landmarks = Places.landmarks();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < config.cabs; i++) {
+            int type = i % TYPES.length;
+            double[] spot = Places.resolve(landmarks[random.nextInt(landmarks.length)]);
+            cabs.add(new Cab(String.format("SIM%s-%05d", runId, i), "Sim Driver " + i,
+                    point(spot[0] + random.nextGaussian() * SPREAD_DEG, spot[1] + random.nextGaussian() * SPREAD_DEG),
+                    TYPES[type], BASE_FARES[type]));
+        }
+        store.addCabs(cabs);
+        fleet.addAll(cabs);
+        running = true;
+        startNanos = System.nanoTime();
+        driver = executor.scheduleAtFixedRate(this::tick, 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops new traffic. Trips already booked still play out on their own
+     * schedule; answers that arrive after this cancel their booking.
+     */
+    synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        stopNanos = System.nanoTime();
+        driver.cancel(false);
+        executor.shutdown();
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    // -------------------- TRAFFIC --------------------
+    private void tick() {
+        long elapsed = System.nanoTime() - startNanos;
+        long requests = owed(config.requestsPerSecond, elapsed, requestsIssued);
+        long moveCount = owed(config.movesPerSecond, elapsed, movesIssued);
+        requestsIssued += requests;
+        movesIssued += moveCount;
+        int workers = config.threads;
+        for (int w = 0; w < workers; w++) {
+            long r = share(requests, w, workers);
+            long m = share(moveCount, w, workers);
+            if (r + m == 0) {
+                continue;
+            }
+            try {
+                executor.execute(() -> {
+                    for (long i = 0; i < r; i++) {
+                        request();
+                    }
+                    for (long i = 0; i < m; i++) {
+                        moveRandomCab();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                return; // stopping
+            }
+        }
+    }
+
+    private static long owed(double perSecond, long elapsedNanos, long issued) {
+        long due = (long) (perSecond * elapsedNanos / 1e9);
+        long cap = (long) (perSecond * MAX_CATCH_UP_NANOS / 1e9) + 1;
+        return Math.max(0, Math.min(due - issued, cap));
+    }
+
+    private static long share(long total, int worker, int workers) {
+        return total / workers + (worker < total % workers ? 1 : 0);
+    }
+
+    private void request() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String[] landmarks = Places.landmarks();
+        double[] near = Places.resolve(landmarks[random.nextInt(landmarks.length)]);
+        String from = point(near[0] + random.nextGaussian() * SPREAD_DEG, near[1] + random.nextGaussian() * SPREAD_DEG);
+        String to = landmarks[random.nextInt(landmarks.length)];
+        String type = random.nextInt(10) < 6 ? null : TYPES[random.nextInt(TYPES.length)];
+        String bookingId = "SIM" + runId + "-B" + nextBooking.incrementAndGet();
+        long began = System.nanoTime();
+        submitted.increment();
+        dispatcher.submit(bookingId, "Sim Rider " + random.nextInt(10_000), from, to, type)
+                .whenComplete((assignment, error) -> {
+                    latency.record(System.nanoTime() - began);
+                    if (error != null) {
+                        failed.increment();
+                    } else if (assignment.result == BookingStore.BookResult.BOOKED) {
+                        booked.increment();
+                        planTrip(bookingId, assignment.cab, to);
+                    } else {
+                        noCab.increment();
+                    }
+                });
+    }
+
+    // Runs on the dispatcher's thread, so only schedules the work
+    private void planTrip(String bookingId, Cab cab, String dropOff) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try {
+            if (random.nextDouble() < config.cancelRatio) {
+                executor.schedule(() -> cancel(bookingId),
+                        random.nextLong(config.pickupMillis + 1), TimeUnit.MILLISECONDS);
+                return;
+            }
+            long ride = config.tripMillis / 2 + random.nextLong(config.tripMillis + 1);
+            executor.schedule(() -> {
+                if (store.transition(bookingId, BookingStatus.ON_TRIP) == BookingStore.TransitionResult.MOVED) {
+                    started.increment();
+                }
+            }, config.pickupMillis, TimeUnit.MILLISECONDS);
+            executor.schedule(() -> {
+                if (store.transition(bookingId, BookingStatus.COMPLETED) == BookingStore.TransitionResult.MOVED) {
+                    completed.increment();
+                    double[] drop = Places.resolve(dropOff);
+                    if (drop != null) {
+                        moveTo(cab, drop[0], drop[1]);
+                    }
+                }
+            }, config.pickupMillis + ride, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            cancel(bookingId); // stopped: don't leave the cab reserved
+        }
+    }
+
+    private void cancel(String bookingId) {
+        if (store.transition(bookingId, BookingStatus.CANCELLED) == BookingStore.TransitionResult.MOVED) {
+            cancelled.increment();
+        }
+    }
+
+    private void moveRandomCab() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Cab cab = fleet.get(random.nextInt(fleet.size()));
+        if (!store.availability().isAvailable(cab.id)) {
+            return; // on a trip; it shows up at the drop-off when the trip ends
+        }
+        double dLat = (random.nextDouble() * 2 - 1) * STEP_DEG;
+        double dLon = (random.nextDouble() * 2 - 1) * STEP_DEG;
+        synchronized (cab) {
+            moveTo(cab, cab.lat + dLat, cab.lon + dLon);
+        }
+        moves.increment();
+    }
+
+    // Position and index entry change together so concurrent moves of one cab can't interleave
+    private void moveTo(Cab cab, double lat, double lon) {
+        synchronized (cab) {
+            cab.lat = lat;
+            cab.lon = lon;
+            engine.cabMoved(cab);
+        }
+    }
+
+    private static String point(double lat, double lon) {
+        return String.format(Locale.ROOT, "%.5f,%.5f", lat, lon);
+    }
+
+    // -------------------- REPORTING --------------------
+    /** Throughput and latency so far, one line per topic. */
+    String report() {
+        long end = running ? System.nanoTime() : stopNanos;
+        double seconds = Math.max(end - startNanos, 1) / 1e9;
+        return String.format(Locale.ROOT,
+                "Ran %.1f s with %d cabs on %d threads%n"
+                        + "Requests: %d (%.0f/s), booked %d, no cab %d, failed %d%n"
+                        + "Dispatch latency: p50 %.1f ms, p99 %.1f ms, max %.1f ms%n"
+                        + "Trips: %d started, %d completed, %d cancelled%n"
+                        + "Cab moves: %d (%.0f/s)",
+                seconds, fleet.size(), config.threads,
+                submitted.sum(), submitted.sum() / seconds, booked.sum(), noCab.sum(), failed.sum(),
+                latency.percentile(0.50) / 1e6, latency.percentile(0.99) / 1e6, latency.percentile(1.0) / 1e6,
+                started.sum(), completed.sum(), cancelled.sum(),
+                moves.sum(), moves.sum() / seconds);
+    }
+
+    /**
+     * Lock-free log-linear histogram of nanosecond values: exact below 16,
+     * then eight buckets per power of two, so percentiles are within 12.5%.
+     */
+    static final class LatencyHistogram {
+        private static final int LINEAR = 16;
+        private final AtomicLongArray counts = new AtomicLongArray(LINEAR + 60 * 8);
+
+        void record(long nanos) {
+            counts.incrementAndGet(bucket(Math.max(nanos, 0)));
+        }
+
+        /** Upper bound of the bucket holding the given quantile (0..1), or 0 if nothing was recorded. */
+        long percentile(double quantile) {
+            long total = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                total += counts.get(i);
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                seen += counts.get(i);
+                if (seen >= rank && total > 0) {
+                    return upperBound(i);
+                }
+            }
+            return 0;
+        }
+
+        private static int bucket(long value) {
+            if (value < LINEAR) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value); // >= 4
+            int sub = (int) (value >>> (exponent - 3)) & 7;
+            return LINEAR + (exponent - 4) * 8 + sub;
+        }
+
+        private static long upperBound(int bucket) {
+            if (bucket < LINEAR) {
+                return bucket;
+            }
+            int exponent = (bucket - LINEAR) / 8 + 4;
+            int sub = (bucket - LINEAR) % 8;
+            return ((8L + sub + 1) << (exponent - 3)) - 1;
+        }
+    }
+
+    // -------------------- STANDALONE --------------------
+    /**
+     * Soak/load test without the UI:
+     * {@code java in.java.main.LoadSimulator [--rate N] [--moves N] [--cabs N]
+     * [--seconds N] [--threads N] [--cancel RATIO] [--journal DIR [--evict-after MINUTES]]}.
+     * With a journal, finished trips are also evicted to an archive in the same directory.
+     * Prints a report every five seconds and once at the end.
+     */
+    public static void main(String[] args) throws Exception {
+        Config config = new Config();
+        long seconds = 60;
+        String journalDir = null;
+        long evictAfter = BookingEvictor.DEFAULT_WINDOW_MILLIS;
+        try {
+            for (int i = 0; i < args.length; i += 2) {
+                String value = i + 1 < args.length ? args[i + 1] : "";
+                switch (args[i]) {
+                    case "--rate": config.requestsPerSecond = Double.parseDouble(value); break;
+                    case "--moves": config.movesPerSecond = Double.parseDouble(value); break;
+                    case "--cabs": config.cabs = Integer.parseInt(value); break;
+                    case "--seconds": seconds = Long.parseLong(value); break;
+                    case "--threads": config.threads = Integer.parseInt(value); break;
+                    case "--cancel": config.cancelRatio = Double.parseDouble(value); break;
+                    case "--journal": journalDir = value; break;
+                    case "--evict-after": evictAfter = (long) (Double.parseDouble(value) * 60_000); break;
+                    default: throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: LoadSimulator [--rate N] [--moves N] [--cabs N] [--seconds N]"
+                    + " [--threads N] [--cancel RATIO] [--journal DIR [--evict-after MINUTES]]");
+            System.exit(2);
+        }
+
+        BookingStore store = new BookingStore();
+        FareEngine fareEngine = new FareEngine();
+        SurgeTracker surgeTracker = new SurgeTracker(store, 60);
+        DispatchEngine engine = new DispatchEngine(store);
+        BatchDispatcher dispatcher = new BatchDispatcher(store, engine, 50);
+        EventBus eventBus = new EventBus(EventBus.DEFAULT_CAPACITY);
+        store.setPricing(fareEngine);
+        fareEngine.setSurgeSource(surgeTracker);
+        dispatcher.setSurgeTracker(surgeTracker);
+        engine.setSurgeTracker(surgeTracker);
+        store.addListener(eventBus);
+        AnalyticsEngine analytics = new AnalyticsEngine();
+        eventBus.subscribe("analytics", analytics);
+        BookingEvictor evictor = new BookingEvictor(store);
+        if (journalDir != null) {
+            BookingArchive archive = BookingArchive.open(Paths.get(journalDir));
+            store.attachArchive(archive);
+            analytics.loadArchive(archive);
+            BookingJournal journal = new BookingJournal(Paths.get(journalDir), store, 250_000);
+            journal.setFailureListener(e -> System.err.println(
+                    "Journal write failed, changes are no longer saved: " + e.getMessage()));
+            journal.recover();
+            journal.start(eventBus);
+            // Only after replay, so eviction never races the recovery
+            evictor.setWindowMillis(evictAfter);
+            evictor.start();
+        }
+        dispatcher.start();
+        surgeTracker.start();
+
+        LoadSimulator simulator = new LoadSimulator(store, engine, dispatcher, config);
+        simulator.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        while (System.nanoTime() < deadline) {
+            Thread.sleep(Math.min(5_000, Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()))));
+            if (System.nanoTime() < deadline) {
+                System.out.println(simulator.report());
+                System.out.println("Event backlog: " + eventBus.backlog() + ", surge: "
+                        + surgeTracker.latest().maxMultiplier() + "x, bookings in memory: "
+                        + store.bookings().size() + ", evicted: " + evictor.evicted() + "\n");
+            }
+        }
+        simulator.stop();
+        System.out.println(simulator.report());
+        dispatcher.shutdown();
+        surgeTracker.shutdown();
+        evictor.shutdown();
+        eventBus.shutdown();
+    }
+}
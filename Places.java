@@ -0,0 +1,67 @@
+package in.java.main;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Resolves the free-text locations used on cabs and bookings to
+ * coordinates. Known landmarks are looked up by name (case-insensitive);
+ * anything else may be typed as "lat,lon". Unresolvable text yields null.
+ */
+final class Places {
+
+    private static final String[] NAMES = {
+        "Downtown", "Airport", "Mall", "City Center", "Railway Station", "Tech Park"
+    };
+    private static final Map<String, double[]> LANDMARKS = new LinkedHashMap<>();
+
+    static {
+        LANDMARKS.put("downtown", new double[]{12.9716, 77.5946});
+        LANDMARKS.put("airport", new double[]{13.1986, 77.7066});
+        LANDMARKS.put("mall", new double[]{12.9346, 77.6101});
+        LANDMARKS.put("city center", new double[]{12.9762, 77.6033});
+        LANDMARKS.put("railway station", new double[]{12.9781, 77.5695});
+        LANDMARKS.put("tech park", new double[]{12.9352, 77.6974});
+    }
+
+    private Places() {
+    }
+
+    /** Display names of the known landmarks. */
+    static String[] landmarks() {
+        return NAMES.clone();
+    }
+
+    /** Returns {lat, lon} for the place, or null if it can't be resolved. */
+    static double[] resolve(String place) {
+        if (place == null) {
+            return null;
+        }
+        String key = place.trim().toLowerCase(Locale.ROOT);
+        double[] known = LANDMARKS.get(key);
+        if (known != null) {
+            return known;
+        }
+        int comma = key.indexOf(',');
+        if (comma > 0) {
+            try {
+                double lat = Double.parseDouble(key.substring(0, comma).trim());
+                double lon = Double.parseDouble(key.substring(comma + 1).trim());
+                if (Math.abs(lat) <= 90 && Math.abs(lon) <= 180) {
+                    return new double[]{lat, lon};
+                }
+            } catch (NumberFormatException e) {
+                // not a coordinate pair
+            }
+        }
+        return null;
+    }
+
+    /** Approximate great-circle distance in km (equirectangular; fine at city scale). */
+    static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double x = Math.toRadians(lon2 - lon1) * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        double y = Math.toRadians(lat2 - lat1);
+        return Math.sqrt(x * x + y * y) * 6371.0;
+    }
+}
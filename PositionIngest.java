@@ -0,0 +1,360 @@
+package in.java.main;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Receives live GPS fixes over UDP and moves cabs with them.
+ * <p>
+ * A datagram carries any number of fixes, so a gateway can forward a
+ * whole fleet in a few packets. Everything is big-endian:
+ * <pre>
+ *   packet: magic 'C' 'P' | version u8 = 1 | count u16 | count records
+ *   record: id length u8 | cab id, UTF-8 | lat i32 | lon i32
+ * </pre>
+ * with latitude and longitude in microdegrees (about 11 cm).
+ * <p>
+ * One thread drains whatever datagrams are queued, decodes them straight
+ * out of a reused direct buffer and looks cab ids up by their raw bytes in
+ * a table of its own, so decoding allocates nothing. Fixes for the same
+ * cab within a batch collapse to the latest, and the batch is then applied
+ * to the cabs and the dispatch grid in one pass. Fixes for unknown cabs
+ * and malformed packets are counted and dropped.
+ */
+final class PositionIngest implements BookingStore.Listener {
+
+    static final int MAGIC = ('C' << 8) | 'P';
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 5;
+    static final int MAX_ID_BYTES = 255;
+    private static final int MAX_DATAGRAM = 64 * 1024;
+    private static final int MAX_PACKETS_PER_BATCH = 256;
+    private static final int RECEIVE_BUFFER = 4 * 1024 * 1024;
+    private static final long SELECT_TIMEOUT_MILLIS = 500;
+
+    private final BookingStore store;
+    private final DispatchEngine engine;
+    // Cabs added since the ingest thread last looked; only that thread touches the table
+    private final Queue<Cab> newCabs = new ConcurrentLinkedQueue<>();
+
+    // -------------------- CAB TABLE (ingest thread only) --------------------
+    // Open addressing on the UTF-8 id bytes
+    private byte[][] keys = new byte[1024][];
+    private Cab[] cabs = new Cab[1024];
+    private int tableSize;
+
+    // -------------------- CURRENT BATCH (ingest thread only) --------------------
+    // Per table slot: the batch that last touched it and where its fix sits
+    private int[] batchOfSlot = new int[1024];
+    private int[] indexOfSlot = new int[1024];
+    private int batch;
+    private Cab[] batchCabs = new Cab[256];
+    private double[] batchLat = new double[256];
+    private double[] batchLon = new double[256];
+    private int batchSize;
+
+    // Written by the ingest thread only, once per packet or batch
+    private volatile long packets, fixes, applied, droppedFixes, rejectedPackets;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_DATAGRAM);
+    private DatagramChannel channel;
+    private Selector selector;
+    private Thread worker;
+    private volatile boolean running;
+
+    PositionIngest(BookingStore store, DispatchEngine engine) {
+        this.store = store;
+        this.engine = engine;
+        // Listen first so a cab added during the scan is queued rather than missed
+        store.addListener(this);
+        for (Cab cab : store.cabs()) {
+            newCabs.add(cab);
+        }
+    }
+
+    @Override
+    public void cabAdded(Cab cab) {
+        newCabs.add(cab);
+    }
+
+    /** Binds the UDP port on all interfaces and starts the ingest thread. */
+    synchronized void start(int port) throws IOException {
+        if (running) {
+            throw new IllegalStateException("Position ingest already started");
+        }
+        selector = Selector.open();
+        channel = DatagramChannel.open();
+        try {
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, RECEIVE_BUFFER);
+            channel.bind(new InetSocketAddress(port));
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ);
+        } catch (IOException e) {
+            channel.close();
+            selector.close();
+            throw e;
+        }
+        running = true;
+        worker = new Thread(this::ingestLoop, "position-ingest");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /** The UDP port actually bound, e.g. after starting on port 0. */
+    synchronized int port() throws IOException {
+        return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+    }
+
+    synchronized void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    long packets() {
+        return packets;
+    }
+
+    /** Fixes decoded, including ones later coalesced or dropped. */
+    long fixes() {
+        return fixes;
+    }
+
+    /** Cab moves applied, after coalescing. */
+    long applied() {
+        return applied;
+    }
+
+    /** Fixes for unknown cabs or impossible coordinates. */
+    long droppedFixes() {
+        return droppedFixes;
+    }
+
+    long rejectedPackets() {
+        return rejectedPackets;
+    }
+
+    private void ingestLoop() {
+        try {
+            while (running) {
+                selector.select(SELECT_TIMEOUT_MILLIS);
+                selector.selectedKeys().clear();
+                beginBatch();
+                for (int i = 0; i < MAX_PACKETS_PER_BATCH; i++) {
+                    buffer.clear();
+                    if (channel.receive(buffer) == null) {
+                        break;
+                    }
+                    buffer.flip();
+                    decode(buffer);
+                }
+                applyBatch();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            try {
+                channel.close();
+                selector.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // -------------------- DECODING --------------------
+    /** Starts a new batch, first taking in any cabs added since the last one. */
+    void beginBatch() {
+        Cab cab;
+        while ((cab = newCabs.poll()) != null) {
+            insert(cab);
+        }
+        if (++batch == 0) {
+            Arrays.fill(batchOfSlot, 0); // wrapped: stale stamps would read as current
+            batch = 1;
+        }
+        batchSize = 0;
+    }
+
+    /**
+     * Adds the fixes in one packet, from its position to its limit, to the
+     * current batch. A packet that is cut short or has a bad header is
+     * dropped from that point on.
+     */
+    void decode(ByteBuffer packet) {
+        packets++;
+        if (packet.remaining() < HEADER_BYTES || (packet.getShort() & 0xFFFF) != MAGIC
+                || (packet.get() & 0xFF) != VERSION) {
+            rejectedPackets++;
+            return;
+        }
+        int count = packet.getShort() & 0xFFFF;
+        int decoded = 0, dropped = 0;
+        boolean truncated = false;
+        for (int i = 0; i < count; i++) {
+            int idLength = packet.hasRemaining() ? packet.get() & 0xFF : -1;
+            if (idLength < 0 || packet.remaining() < idLength + 8) {
+                truncated = true;
+                break;
+            }
+            int idStart = packet.position();
+            packet.position(idStart + idLength);
+            int latE6 = packet.getInt();
+            int lonE6 = packet.getInt();
+            decoded++;
+            int slot = find(packet, idStart, idLength);
+            if (slot < 0 || latE6 < -90_000_000 || latE6 > 90_000_000
+                    || lonE6 < -180_000_000 || lonE6 > 180_000_000) {
+                dropped++;
+                continue;
+            }
+            add(slot, latE6 / 1e6, lonE6 / 1e6);
+        }
+        fixes += decoded;
+        droppedFixes += dropped;
+        if (truncated) {
+            rejectedPackets++;
+        }
+    }
+
+    private void add(int slot, double lat, double lon) {
+        int index;
+        if (batchOfSlot[slot] == batch) {
+            index = indexOfSlot[slot]; // a later fix for the same cab replaces the earlier one
+        } else {
+            if (batchSize == batchCabs.length) {
+                batchCabs = Arrays.copyOf(batchCabs, batchSize * 2);
+                batchLat = Arrays.copyOf(batchLat, batchSize * 2);
+                batchLon = Arrays.copyOf(batchLon, batchSize * 2);
+            }
+            index = batchSize++;
+            batchOfSlot[slot] = batch;
+            indexOfSlot[slot] = index;
+            batchCabs[index] = cabs[slot];
+        }
+        batchLat[index] = lat;
+        batchLon[index] = lon;
+    }
+
+    /** Moves every cab in the batch to its latest fix and returns how many moved. */
+    int applyBatch() {
+        for (int i = 0; i < batchSize; i++) {
+            Cab cab = batchCabs[i];
+            synchronized (cab) {
+                cab.lat = batchLat[i];
+                cab.lon = batchLon[i];
+                engine.cabMoved(cab);
+            }
+            batchCabs[i] = null;
+        }
+        int moved = batchSize;
+        applied += moved;
+        batchSize = 0;
+        return moved;
+    }
+
+    // -------------------- CAB TABLE --------------------
+    private int find(ByteBuffer packet, int start, int length) {
+        int mask = keys.length - 1;
+        for (int slot = hash(packet, start, length) & mask; ; slot = (slot + 1) & mask) {
+            byte[] key = keys[slot];
+            if (key == null) {
+                return -1;
+            }
+            if (key.length == length && matches(key, packet, start)) {
+                return slot;
+            }
+        }
+    }
+
+    private static boolean matches(byte[] key, ByteBuffer packet, int start) {
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != packet.get(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void insert(Cab cab) {
+        byte[] key = cab.id.getBytes(StandardCharsets.UTF_8);
+        if (key.length > MAX_ID_BYTES) {
+            return; // can't be addressed on the wire
+        }
+        if ((tableSize + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        int mask = keys.length - 1;
+        for (int slot = hash(ByteBuffer.wrap(key), 0, key.length) & mask; ; slot = (slot + 1) & mask) {
+            if (keys[slot] == null) {
+                keys[slot] = key;
+                cabs[slot] = cab;
+                tableSize++;
+                return;
+            }
+            if (Arrays.equals(keys[slot], key)) {
+                cabs[slot] = cab; // queued again by the constructor's scan
+                return;
+            }
+        }
+    }
+
+    // Only between batches, so no slot of the current batch is renumbered
+    private void resize(int capacity) {
+        byte[][] oldKeys = keys;
+        Cab[] oldCabs = cabs;
+        keys = new byte[capacity][];
+        cabs = new Cab[capacity];
+        batchOfSlot = new int[capacity];
+        indexOfSlot = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            byte[] key = oldKeys[i];
+            if (key != null) {
+                int slot = hash(ByteBuffer.wrap(key), 0, key.length) & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                cabs[slot] = oldCabs[i];
+            }
+        }
+    }
+
+    // FNV-1a, spread so the low bits used for the slot depend on every byte
+    private static int hash(ByteBuffer bytes, int start, int length) {
+        int h = 0x811C9DC5;
+        for (int i = 0; i < length; i++) {
+            h = (h ^ (bytes.get(start + i) & 0xFF)) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    // -------------------- ENCODING --------------------
+    /** Writes a packet header announcing {@code count} records. */
+    static void putHeader(ByteBuffer out, int count) {
+        out.putShort((short) MAGIC).put((byte) VERSION).putShort((short) count);
+    }
+
+    /** Writes one fix for the cab whose UTF-8 id is {@code cabId}. */
+    static void putFix(ByteBuffer out, byte[] cabId, double lat, double lon) {
+        out.put((byte) cabId.length).put(cabId)
+                .putInt((int) Math.round(lat * 1e6)).putInt((int) Math.round(lon * 1e6));
+    }
+}
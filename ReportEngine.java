@@ -0,0 +1,366 @@
+package in.java.main;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Grouped reports over the whole booking history (archive and memory),
+ * computed with fork/join parallelism.
+ * <p>
+ * The row range is fixed when a report starts, the same way the CSV export
+ * does it. It is split in half recursively down to leaves of
+ * {@link #LEAF_ROWS} rows. Each leaf accumulates into arrays indexed by cab
+ * (trips and fare paise), or into a map of per-customer long[] counters, and
+ * halves are merged by adding arrays together. Leaves share no mutable
+ * state, so the work scales with the number of cores. Cancelled bookings
+ * were never trips and are left out. Nothing here touches Swing; callers
+ * run it from a background thread.
+ */
+class ReportEngine {
+
+    enum Kind {
+        REVENUE_BY_DRIVER("Revenue by Driver"),
+        UTILIZATION_BY_TYPE("Utilization by Cab Type"),
+        REPEAT_CUSTOMERS("Repeat Customers");
+
+        final String title;
+
+        Kind(String title) {
+            this.title = title;
+        }
+
+        @Override
+        public String toString() {
+            return title;
+        }
+    }
+
+    /** A finished report: column names plus rows of cell values. */
+    static final class Report {
+        final String title;
+        final String[] columns;
+        final List<Object[]> rows;
+        final long scannedRows;
+        final long millis;
+
+        Report(String title, String[] columns, List<Object[]> rows, long scannedRows, long millis) {
+            this.title = title;
+            this.columns = columns;
+            this.rows = rows;
+            this.scannedRows = scannedRows;
+            this.millis = millis;
+        }
+    }
+
+    private static final int LEAF_ROWS = 16 * 1024;
+
+    // Per-customer counters
+    private static final int TRIPS = 0, PAISE = 1, FIRST = 2, LAST = 3;
+
+    private final BookingStore store;
+    private final ForkJoinPool pool;
+
+    ReportEngine(BookingStore store, ForkJoinPool pool) {
+        this.store = store;
+        this.pool = pool;
+    }
+
+    /**
+     * Runs a report over bookings made in [fromMillis, toMillis). Pass 0 and
+     * Long.MAX_VALUE for all time; bookings without a timestamp only count
+     * then.
+     *
+     * @throws CancellationException if {@code cancelled} turned true mid-way
+     */
+    Report run(Kind kind, long fromMillis, long toMillis, BooleanSupplier cancelled) {
+        long start = System.nanoTime();
+        Rows rows = new Rows(store, fromMillis, toMillis, cancelled);
+        Report report;
+        switch (kind) {
+            case REVENUE_BY_DRIVER:
+                report = revenueByDriver(pool.invoke(new CabTask(rows, 0, rows.total)), rows);
+                break;
+            case UTILIZATION_BY_TYPE:
+                report = utilizationByType(pool.invoke(new CabTask(rows, 0, rows.total)), rows);
+                break;
+            default:
+                report = repeatCustomers(pool.invoke(new CustomerTask(rows, 0, rows.total)), rows);
+        }
+        return new Report(report.title, report.columns, report.rows, rows.total,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // -------------------- REPORT SHAPING --------------------
+    private static Report revenueByDriver(CabTotals totals, Rows rows) {
+        Map<String, long[]> byDriver = new HashMap<>(); // cabs, trips, paise
+        for (int c = 0; c < rows.cabCount; c++) {
+            long[] driver = byDriver.computeIfAbsent(rows.cab(c).driver, d -> new long[3]);
+            driver[0]++;
+            driver[1] += totals.trips[c];
+            driver[2] += totals.paise[c];
+        }
+        List<Map.Entry<String, long[]>> entries = new ArrayList<>(byDriver.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue()[2], a.getValue()[2]));
+        List<Object[]> out = new ArrayList<>(entries.size());
+        for (Map.Entry<String, long[]> e : entries) {
+            long[] v = e.getValue();
+            out.add(new Object[]{e.getKey(), v[0], v[1], rupees(v[2]), rupees(v[1] == 0 ? 0 : v[2] / v[1])});
+        }
+        return new Report(Kind.REVENUE_BY_DRIVER.title,
+                new String[]{"Driver", "Cabs", "Trips", "Revenue (₹)", "Avg Fare (₹)"}, out, 0, 0);
+    }
+
+    private static Report utilizationByType(CabTotals totals, Rows rows) {
+        Map<String, long[]> byType = new LinkedHashMap<>(); // cabs, cabs used, trips, paise
+        for (int c = 0; c < rows.cabCount; c++) {
+            long[] type = byType.computeIfAbsent(rows.cab(c).type, t -> new long[4]);
+            type[0]++;
+            if (totals.trips[c] > 0) {
+                type[1]++;
+            }
+            type[2] += totals.trips[c];
+            type[3] += totals.paise[c];
+        }
+        List<Object[]> out = new ArrayList<>(byType.size());
+        for (Map.Entry<String, long[]> e : byType.entrySet()) {
+            long[] v = e.getValue();
+            out.add(new Object[]{e.getKey(), v[0], String.format("%.1f%%", v[1] * 100.0 / v[0]), v[2],
+                    String.format("%.2f", (double) v[2] / v[0]), rupees(v[3])});
+        }
+        out.sort((a, b) -> Long.compare((Long) b[3], (Long) a[3]));
+        return new Report(Kind.UTILIZATION_BY_TYPE.title,
+                new String[]{"Cab Type", "Cabs", "Cabs Used", "Trips", "Trips / Cab", "Revenue (₹)"}, out, 0, 0);
+    }
+
+    private static Report repeatCustomers(Map<String, long[]> totals, Rows rows) {
+        List<Map.Entry<String, long[]>> repeat = new ArrayList<>();
+        for (Map.Entry<String, long[]> e : totals.entrySet()) {
+            if (e.getValue()[TRIPS] >= 2) {
+                repeat.add(e);
+            }
+        }
+        repeat.sort((a, b) -> Long.compare(b.getValue()[TRIPS], a.getValue()[TRIPS]));
+        List<Object[]> out = new ArrayList<>(repeat.size());
+        for (Map.Entry<String, long[]> e : repeat) {
+            long[] v = e.getValue();
+            out.add(new Object[]{e.getKey(), v[TRIPS], rupees(v[PAISE]), date(v[FIRST]), date(v[LAST])});
+        }
+        return new Report(Kind.REPEAT_CUSTOMERS.title + " (" + out.size() + " of " + totals.size() + ")",
+                new String[]{"Customer", "Trips", "Spent (₹)", "First Trip", "Last Trip"}, out, 0, 0);
+    }
+
+    private static String rupees(long paise) {
+        return String.format("%.2f", paise / 100.0);
+    }
+
+    private static String date(long epochMillis) {
+        return epochMillis == 0 || epochMillis == Long.MAX_VALUE ? "-"
+                : Instant.ofEpochMilli(epochMillis).atZone(ZoneId.systemDefault()).toLocalDate().toString();
+    }
+
+    // -------------------- ROW SOURCE --------------------
+    /** The report's fixed row range over archive + memory, plus the cab index. */
+    private static final class Rows {
+        final BookingArchive archive;
+        final int archivedRows;
+        final AppendOnlyList<Booking> hot;
+        final int total;
+        final long fromMillis, toMillis;
+        final boolean allTime;
+        final BooleanSupplier cancelled;
+        final AppendOnlyList<Cab> cabs;
+        final int cabCount;
+        final Map<String, Integer> cabIndex;
+        // Per-cab leaves allocate arrays as long as the fleet, so keep them
+        // at least that many rows long for the copying to stay a small cost
+        final int leafRows;
+
+        Rows(BookingStore store, long fromMillis, long toMillis, BooleanSupplier cancelled) {
+            BookingStore.BookingView view = store.bookingView();
+            this.archive = store.archive();
+            this.archivedRows = view.archivedRows;
+            this.hot = view.hot;
+            this.total = archivedRows + hot.size();
+            this.fromMillis = fromMillis;
+            this.toMillis = toMillis;
+            this.allTime = fromMillis <= 0 && toMillis == Long.MAX_VALUE;
+            this.cancelled = cancelled;
+            this.cabs = store.cabs();
+            this.cabCount = cabs.size();
+            this.cabIndex = new HashMap<>(cabCount * 2);
+            for (int c = 0; c < cabCount; c++) {
+                cabIndex.put(cabs.get(c).id, c);
+            }
+            this.leafRows = Math.max(LEAF_ROWS, 2 * cabCount);
+        }
+
+        Cab cab(int index) {
+            return cabs.get(index);
+        }
+
+        boolean counts(BookingStatus status, long createdAt) {
+            return status != BookingStatus.CANCELLED
+                    && (allTime || (createdAt != 0 && createdAt >= fromMillis && createdAt < toMillis));
+        }
+
+        void checkCancelled() {
+            if (cancelled.getAsBoolean()) {
+                throw new CancellationException("Report cancelled");
+            }
+        }
+    }
+
+    // -------------------- FORK/JOIN TASKS --------------------
+    private static final class CabTotals {
+        final long[] trips;
+        final long[] paise;
+
+        CabTotals(int cabs) {
+            trips = new long[cabs];
+            paise = new long[cabs];
+        }
+
+        CabTotals add(CabTotals other) {
+            for (int c = 0; c < trips.length; c++) {
+                trips[c] += other.trips[c];
+                paise[c] += other.paise[c];
+            }
+            return this;
+        }
+    }
+
+    /** Trips and fare per cab over a row range. */
+    private static final class CabTask extends RecursiveTask<CabTotals> {
+        private final Rows rows;
+        private final int from, to;
+
+        CabTask(Rows rows, int from, int to) {
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected CabTotals compute() {
+            if (to - from > rows.leafRows) {
+                int mid = (from + to) >>> 1;
+                CabTask left = new CabTask(rows, from, mid);
+                left.fork();
+                CabTotals right = new CabTask(rows, mid, to).compute();
+                return right.add(left.join());
+            }
+            rows.checkCancelled();
+            CabTotals totals = new CabTotals(rows.cabCount);
+            for (int row = from; row < to; row++) {
+                String cabId;
+                long paise;
+                long createdAt;
+                BookingStatus status;
+                if (row < rows.archivedRows) {
+                    cabId = rows.archive.cabId(row);
+                    paise = rows.archive.farePaise(row);
+                    createdAt = rows.archive.createdAt(row);
+                    status = rows.archive.status(row);
+                } else {
+                    Booking b = rows.hot.get(row - rows.archivedRows);
+                    cabId = b.cabId;
+                    paise = Math.round(b.fare * 100);
+                    createdAt = b.createdAt;
+                    status = b.status;
+                }
+                Integer cab = rows.cabIndex.get(cabId);
+                if (cab != null && rows.counts(status, createdAt)) {
+                    totals.trips[cab]++;
+                    totals.paise[cab] += paise;
+                }
+            }
+            return totals;
+        }
+    }
+
+    /** Trips, spend and first/last trip time per customer over a row range. */
+    private static final class CustomerTask extends RecursiveTask<Map<String, long[]>> {
+        private final Rows rows;
+        private final int from, to;
+
+        CustomerTask(Rows rows, int from, int to) {
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<String, long[]> compute() {
+            if (to - from > LEAF_ROWS) {
+                int mid = (from + to) >>> 1;
+                CustomerTask left = new CustomerTask(rows, from, mid);
+                left.fork();
+                Map<String, long[]> right = new CustomerTask(rows, mid, to).compute();
+                return merge(right, left.join());
+            }
+            rows.checkCancelled();
+            Map<String, long[]> totals = new HashMap<>();
+            for (int row = from; row < to; row++) {
+                String customer;
+                long paise;
+                long createdAt;
+                BookingStatus status;
+                if (row < rows.archivedRows) {
+                    customer = rows.archive.customer(row);
+                    paise = rows.archive.farePaise(row);
+                    createdAt = rows.archive.createdAt(row);
+                    status = rows.archive.status(row);
+                } else {
+                    Booking b = rows.hot.get(row - rows.archivedRows);
+                    customer = b.customer;
+                    paise = Math.round(b.fare * 100);
+                    createdAt = b.createdAt;
+                    status = b.status;
+                }
+                if (!rows.counts(status, createdAt)) {
+                    continue;
+                }
+                long[] c = totals.get(customer);
+                if (c == null) {
+                    c = new long[]{0, 0, Long.MAX_VALUE, 0};
+                    totals.put(customer, c);
+                }
+                c[TRIPS]++;
+                c[PAISE] += paise;
+                if (createdAt != 0) {
+                    c[FIRST] = Math.min(c[FIRST], createdAt);
+                    c[LAST] = Math.max(c[LAST], createdAt);
+                }
+            }
+            return totals;
+        }
+
+        // Folds the smaller map into the larger one
+        private static Map<String, long[]> merge(Map<String, long[]> a, Map<String, long[]> b) {
+            Map<String, long[]> into = a.size() >= b.size() ? a : b;
+            Map<String, long[]> from = into == a ? b : a;
+            for (Map.Entry<String, long[]> e : from.entrySet()) {
+                long[] mine = into.get(e.getKey());
+                long[] theirs = e.getValue();
+                if (mine == null) {
+                    into.put(e.getKey(), theirs);
+                } else {
+                    mine[TRIPS] += theirs[TRIPS];
+                    mine[PAISE] += theirs[PAISE];
+                    mine[FIRST] = Math.min(mine[FIRST], theirs[FIRST]);
+                    mine[LAST] = Math.max(mine[LAST], theirs[LAST]);
+                }
+            }
+            return into;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package in.java.main;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Live demand and supply per zone, and the surge multiplier derived from
+ * them.
+ * <p>
+ * A zone is the area closest to one of the known landmarks; anything
+ * further than {@link #ZONE_RADIUS_KM} from all of them is "Outskirts".
+ * <p>
+ * Demand is a rate: ride requests over a sliding window, counted into
+ * per-second buckets with a CAS on one long each, so recording never
+ * locks. Each bucket carries the second it counts, so a bucket left over
+ * from an earlier lap (say, after the tick fell behind) is never summed.
+ * Supply is a stock: free cabs per zone, kept in atomic counters updated as
+ * cabs are added, flip between free and busy, or move.
+ * <p>
+ * To compare the two, demand is scaled to requests per minute and divided
+ * by what the zone's free cabs can take in a minute,
+ * {@link #REQUESTS_PER_CAB_PER_MINUTE} each. Once a second a background tick
+ * moves each zone's multiplier a bounded step towards
+ * {@code 1 + (ratio - 1) / 2}, clamped to [1, MAX_SURGE]. The result is
+ * published as an immutable {@link Reading} that fares and the dashboard
+ * read without locking.
+ */
+final class SurgeTracker implements FareEngine.SurgeSource, BookingStore.Listener {
+
+    static final double ZONE_RADIUS_KM = 8.0;
+    static final double MAX_SURGE = 3.0;
+    /** New requests one free cab is expected to absorb per minute. */
+    static final double REQUESTS_PER_CAB_PER_MINUTE = 1.0;
+    private static final double MAX_STEP = 0.2;
+
+    /**
+     * Per-zone numbers as of one tick: requests over the window, free cabs
+     * and multipliers. Arrays are indexed by zone and never modified.
+     */
+    static final class Reading {
+        final String[] zones;
+        final int windowSeconds;
+        final long[] demand;
+        final long[] supply;
+        final double[] multipliers;
+
+        Reading(String[] zones, int windowSeconds, long[] demand, long[] supply, double[] multipliers) {
+            this.zones = zones;
+            this.windowSeconds = windowSeconds;
+            this.demand = demand;
+            this.supply = supply;
+            this.multipliers = multipliers;
+        }
+
+        double demandPerMinute(int zone) {
+            return demand[zone] * 60.0 / windowSeconds;
+        }
+
+        /** Free cabs the zone would need to keep up with its current demand. */
+        long cabsNeeded(int zone) {
+            return (long) Math.ceil(demandPerMinute(zone) / REQUESTS_PER_CAB_PER_MINUTE);
+        }
+
+        long totalDemand() {
+            long total = 0;
+            for (long d : demand) {
+                total += d;
+            }
+            return total;
+        }
+
+        long totalSupply() {
+            long total = 0;
+            for (long s : supply) {
+                total += s;
+            }
+            return total;
+        }
+
+        /** Zone with the highest multiplier (ties go to the busiest), or -1 if nothing is surging. */
+        int hottestZone() {
+            int hottest = -1;
+            for (int z = 0; z < zones.length; z++) {
+                if (multipliers[z] > 1.0 && (hottest < 0 || multipliers[z] > multipliers[hottest]
+                        || (multipliers[z] == multipliers[hottest] && demand[z] > demand[hottest]))) {
+                    hottest = z;
+                }
+            }
+            return hottest;
+        }
+
+        double maxMultiplier() {
+            int z = hottestZone();
+            return z < 0 ? 1.0 : multipliers[z];
+        }
+    }
+
+    private final BookingStore store;
+    private final int windowSeconds;
+    private final String[] zones;
+    private final double[] zoneLat;
+    private final double[] zoneLon;
+    // zone * windowSeconds + (second % windowSeconds) -> that second (low 32 bits) << 32 | requests in it
+    private final AtomicLongArray buckets;
+    // zone -> free cabs in it; each counted cab's zone is kept alongside, changed under the cab's monitor
+    private final AtomicLongArray freeCabs;
+    private final Map<String, Integer> countedZone = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "surge-tracker");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile Reading latest;
+
+    SurgeTracker(BookingStore store, int windowSeconds) {
+        this.store = store;
+        this.windowSeconds = windowSeconds;
+        String[] landmarks = Places.landmarks();
+        int n = landmarks.length;
+        zones = new String[n + 1];
+        zoneLat = new double[n];
+        zoneLon = new double[n];
+        for (int z = 0; z < n; z++) {
+            double[] position = Places.resolve(landmarks[z]);
+            zones[z] = landmarks[z];
+            zoneLat[z] = position[0];
+            zoneLon[z] = position[1];
+        }
+        zones[n] = "Outskirts";
+        buckets = new AtomicLongArray(zones.length * windowSeconds);
+        freeCabs = new AtomicLongArray(zones.length);
+        double[] flat = new double[zones.length];
+        Arrays.fill(flat, 1.0);
+        latest = new Reading(zones, windowSeconds, new long[zones.length], new long[zones.length], flat);
+        // Listen first so a cab added or flipped during the scan is counted rather than missed
+        store.addListener(this);
+        store.availability().addChangeListener(cabId -> {
+            Cab cab = store.findCab(cabId);
+            if (cab != null) {
+                recount(cab);
+            }
+        });
+        for (Cab cab : store.cabs()) {
+            recount(cab);
+        }
+    }
+
+    void start() {
+        ticker.scheduleAtFixedRate(() -> {
+            try {
+                tick();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    void shutdown() {
+        ticker.shutdownNow();
+    }
+
+    /** Counts one ride request with a pickup at this point. */
+    void recordRequest(double lat, double lon) {
+        long second = System.currentTimeMillis() / 1000;
+        int index = zoneOf(lat, lon) * windowSeconds + (int) (second % windowSeconds);
+        long stamp = second & 0xFFFFFFFFL;
+        while (true) {
+            long bucket = buckets.get(index);
+            // A bucket still stamped with an earlier lap's second starts over
+            long next = bucket >>> 32 == stamp ? bucket + 1 : stamp << 32 | 1;
+            if (buckets.compareAndSet(index, bucket, next)) {
+                return;
+            }
+        }
+    }
+
+    /** Counts one ride request; pickups that can't be resolved are ignored. */
+    void recordRequest(String pickup) {
+        double[] position = Places.resolve(pickup);
+        if (position != null) {
+            recordRequest(position[0], position[1]);
+        }
+    }
+
+    @Override
+    public void cabAdded(Cab cab) {
+        recount(cab);
+    }
+
+    /** Moves a cab's free-cab count to the zone it is in now; call after its position changed. */
+    void cabMoved(Cab cab) {
+        recount(cab);
+    }
+
+    // Re-reads the cab's state rather than applying a delta, so racing updates settle on the truth
+    private void recount(Cab cab) {
+        synchronized (cab) {
+            int zone = cab.hasPosition() && store.availability().isAvailable(cab.id) ? zoneOf(cab.lat, cab.lon) : -1;
+            Integer counted = countedZone.get(cab.id);
+            int was = counted == null ? -1 : counted;
+            if (zone == was) {
+                return;
+            }
+            if (was >= 0) {
+                freeCabs.decrementAndGet(was);
+            }
+            if (zone >= 0) {
+                freeCabs.incrementAndGet(zone);
+                countedZone.put(cab.id, zone);
+            } else {
+                countedZone.remove(cab.id);
+            }
+        }
+    }
+
+    @Override
+    public double multiplierAt(double lat, double lon) {
+        return latest.multipliers[zoneOf(lat, lon)];
+    }
+
+    Reading latest() {
+        return latest;
+    }
+
+    int zoneOf(double lat, double lon) {
+        int nearest = zoneLat.length; // Outskirts
+        double best = ZONE_RADIUS_KM;
+        for (int z = 0; z < zoneLat.length; z++) {
+            double d = Places.distanceKm(lat, lon, zoneLat[z], zoneLon[z]);
+            if (d < best) {
+                best = d;
+                nearest = z;
+            }
+        }
+        return nearest;
+    }
+
+    // -------------------- TICKER THREAD --------------------
+    private void tick() {
+        int zoneCount = zones.length;
+        long now = System.currentTimeMillis() / 1000;
+        long[] demand = new long[zoneCount];
+        long[] supply = new long[zoneCount];
+        for (int z = 0; z < zoneCount; z++) {
+            for (int s = 0; s < windowSeconds; s++) {
+                long bucket = buckets.get(z * windowSeconds + s);
+                // Only seconds inside the window; 32-bit stamps compared modulo 2^32
+                if (((now - (bucket >>> 32)) & 0xFFFFFFFFL) < windowSeconds) {
+                    demand[z] += bucket & 0xFFFFFFFFL;
+                }
+            }
+            supply[z] = freeCabs.get(z);
+        }
+
+        double[] previous = latest.multipliers;
+        double[] multipliers = new double[zoneCount];
+        for (int z = 0; z < zoneCount; z++) {
+            double target;
+            if (demand[z] == 0) {
+                target = 1.0;
+            } else if (supply[z] == 0) {
+                target = MAX_SURGE;
+            } else {
+                double perMinute = demand[z] * 60.0 / windowSeconds;
+                double ratio = perMinute / (supply[z] * REQUESTS_PER_CAB_PER_MINUTE);
+                target = Math.max(1.0, Math.min(MAX_SURGE, 1 + (ratio - 1) / 2));
+            }
+            // Ease towards the target so one noisy second doesn't swing prices
+            double step = Math.max(-MAX_STEP, Math.min(MAX_STEP, target - previous[z]));
+            multipliers[z] = Math.round((previous[z] + step) * 10) / 10.0;
+        }
+        latest = new Reading(zones, windowSeconds, demand, supply, multipliers);
+    }
+}
@@ -0,0 +1,90 @@
+package in.java.main;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchDispatcherTest {
+
+    @Test
+    void picksTheCheaperPairingOverTheGreedyOne() {
+        // Greedy gives row 0 column 0 (1) and leaves row 1 with 10; optimal is 2 + 2
+        double[][] cost = {
+                {1, 2},
+                {2, 10},
+        };
+        assertArrayEquals(new int[]{1, 0}, BatchDispatcher.hungarian(cost, 2, 2));
+    }
+
+    @Test
+    void matchesBruteForceOnRandomRectangularBatches() {
+        Random random = new Random(7);
+        for (int round = 0; round < 500; round++) {
+            int n = 1 + random.nextInt(6);
+            int m = n + random.nextInt(3);
+            double[][] cost = new double[n][m];
+            for (double[] row : cost) {
+                for (int j = 0; j < m; j++) {
+                    // Some cells are "no edge", as for cabs outside a request's candidates
+                    row[j] = random.nextInt(5) == 0 ? 1e9 : random.nextInt(1000) / 10.0;
+                }
+            }
+            int[] assigned = BatchDispatcher.hungarian(cost, n, m);
+
+            boolean[] taken = new boolean[m];
+            for (int column : assigned) {
+                assertTrue(column >= 0 && column < m && !taken[column], Arrays.toString(assigned));
+                taken[column] = true;
+            }
+            assertEquals(bruteForce(cost, 0, new boolean[m]), total(cost, assigned), 1e-6);
+        }
+    }
+
+    private static double total(double[][] cost, int[] assigned) {
+        double sum = 0;
+        for (int i = 0; i < assigned.length; i++) {
+            sum += cost[i][assigned[i]];
+        }
+        return sum;
+    }
+
+    private static double bruteForce(double[][] cost, int row, boolean[] taken) {
+        if (row == cost.length) {
+            return 0;
+        }
+        double best = Double.POSITIVE_INFINITY;
+        for (int j = 0; j < taken.length; j++) {
+            if (!taken[j]) {
+                taken[j] = true;
+                best = Math.min(best, cost[row][j] + bruteForce(cost, row + 1, taken));
+                taken[j] = false;
+            }
+        }
+        return best;
+    }
+
+    @Test
+    void refusesRequestsOnceStopped() {
+        BookingStore store = new BookingStore();
+        BatchDispatcher dispatcher = new BatchDispatcher(store, new DispatchEngine(store), 10);
+        dispatcher.start();
+        dispatcher.shutdown();
+
+        String place = Places.landmarks()[0];
+        CompletableFuture<DispatchEngine.Assignment> result = dispatcher.submit("B1", "Alice", place, place, null);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        assertEquals(0, dispatcher.pending());
+    }
+}
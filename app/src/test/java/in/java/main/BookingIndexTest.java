@@ -0,0 +1,167 @@
+package in.java.main;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookingIndexTest {
+
+    private static final String[] CUSTOMERS = {"Alice", "Alan", "Bob", "Cara", "alfred"};
+    private static final String[] PLACES = {"Airport", "Mall", "Station", "Downtown"};
+    private static final double[] FARES = {120, 250.5, 90, 250.5, 400};
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void pagesThroughEverySortOrder() {
+        List<Booking> bookings = sampleBookings(0, 43);
+        BookingIndex index = indexOf(bookings);
+
+        for (BookingIndex.Sort sort : BookingIndex.Sort.values()) {
+            assertPagesMatch(index, BookingIndex.Field.CUSTOMER, "", sort, expected(bookings, b -> true, sort));
+        }
+    }
+
+    @Test
+    void equalFaresListNewestFirstBothWays() {
+        List<Booking> bookings = sampleBookings(0, 10);
+        BookingIndex index = indexOf(bookings);
+
+        List<String> high = index.query(BookingIndex.Field.CUSTOMER, "", BookingIndex.Sort.FARE_HIGH, 0, 10).bookingIds;
+        List<String> low = index.query(BookingIndex.Field.CUSTOMER, "", BookingIndex.Sort.FARE_LOW, 0, 10).bookingIds;
+        // 400 is the top fare, booked at 4 and 9; 90 the bottom, at 2 and 7
+        assertEquals(List.of("B9", "B4"), high.subList(0, 2));
+        assertEquals(List.of("B7", "B2"), low.subList(0, 2));
+    }
+
+    @Test
+    void filtersThenSortsAndPages() {
+        List<Booking> bookings = sampleBookings(0, 60);
+        BookingIndex index = indexOf(bookings);
+
+        for (BookingIndex.Sort sort : BookingIndex.Sort.values()) {
+            assertPagesMatch(index, BookingIndex.Field.CUSTOMER, "AL", sort,
+                    expected(bookings, b -> b.customer.toLowerCase().startsWith("al"), sort));
+            assertPagesMatch(index, BookingIndex.Field.CAB, " cab2 ", sort,
+                    expected(bookings, b -> b.cabId.equals("CAB2"), sort));
+            assertPagesMatch(index, BookingIndex.Field.ROUTE, "mall", sort,
+                    expected(bookings, b -> b.from.equals("Mall") || b.to.equals("Mall"), sort));
+            assertPagesMatch(index, BookingIndex.Field.ROUTE, "mall -> air", sort,
+                    expected(bookings, b -> b.from.equals("Mall") && b.to.equals("Airport"), sort));
+            assertPagesMatch(index, BookingIndex.Field.ROUTE, "-> sta", sort,
+                    expected(bookings, b -> b.to.equals("Station"), sort));
+        }
+        assertEquals(0, index.query(BookingIndex.Field.CAB, "CAB9", BookingIndex.Sort.NEWEST, 0, 10).total);
+    }
+
+    @Test
+    void offsetPastTheEndIsAnEmptyPage() {
+        BookingIndex index = indexOf(sampleBookings(0, 5));
+
+        BookingIndex.Page page = index.query(BookingIndex.Field.CUSTOMER, "", BookingIndex.Sort.FARE_LOW, 5, 10);
+        assertTrue(page.bookingIds.isEmpty());
+        assertEquals(5, page.total);
+        assertEquals(List.of("B4"), index.query(BookingIndex.Field.CUSTOMER, "", BookingIndex.Sort.OLDEST, 4, 10).bookingIds);
+    }
+
+    @Test
+    void archivedBookingsKeepTheirPlace() throws Exception {
+        List<Booking> history = sampleBookings(0, 12);
+        List<Booking> live = sampleBookings(12, 12);
+        try (BookingArchive archive = BookingArchive.open(dir)) {
+            archive.append(history);
+            BookingIndex index = new BookingIndex();
+            index.loadArchive(archive);
+            feed(index, live);
+            // Half the live bookings move to the archive after being indexed
+            archive.append(live.subList(0, 6));
+            index.bookingsArchived(6);
+
+            List<Booking> all = new ArrayList<>(history);
+            all.addAll(live);
+            for (BookingIndex.Sort sort : BookingIndex.Sort.values()) {
+                assertPagesMatch(index, BookingIndex.Field.CUSTOMER, "", sort, expected(all, b -> true, sort));
+                assertPagesMatch(index, BookingIndex.Field.CUSTOMER, "bob", sort,
+                        expected(all, b -> b.customer.equals("Bob"), sort));
+            }
+        }
+    }
+
+    // -------------------- HELPERS --------------------
+    private static List<Booking> sampleBookings(int first, int count) {
+        List<Booking> bookings = new ArrayList<>();
+        for (int i = first; i < first + count; i++) {
+            Booking b = new Booking("B" + i, "CAB" + (i % 3), CUSTOMERS[i % CUSTOMERS.length],
+                    PLACES[i % PLACES.length], PLACES[(i / PLACES.length + i + 1) % PLACES.length], FARES[i % FARES.length]);
+            b.status = BookingStatus.COMPLETED;
+            bookings.add(b);
+        }
+        return bookings;
+    }
+
+    private static BookingIndex indexOf(List<Booking> bookings) {
+        BookingIndex index = new BookingIndex();
+        feed(index, bookings);
+        return index;
+    }
+
+    private static void feed(BookingIndex index, List<Booking> bookings) {
+        for (int i = 0; i < bookings.size(); i++) {
+            EventBus.Event event = new EventBus.Event();
+            event.type = EventBus.Type.BOOKING_CREATED;
+            event.booking = bookings.get(i);
+            event.status = event.booking.status;
+            index.onEvent(event, i == bookings.size() - 1);
+        }
+    }
+
+    // Brute force: the list is in booking order, so its position is the sequence number
+    private static List<String> expected(List<Booking> bookings, Predicate<Booking> filter, BookingIndex.Sort sort) {
+        List<Integer> seqs = new ArrayList<>();
+        for (int i = 0; i < bookings.size(); i++) {
+            if (filter.test(bookings.get(i))) {
+                seqs.add(i);
+            }
+        }
+        Comparator<Integer> newest = Comparator.reverseOrder();
+        Comparator<Integer> byFare = Comparator.comparingDouble(seq -> bookings.get(seq).fare);
+        switch (sort) {
+            case NEWEST:
+                seqs.sort(newest);
+                break;
+            case OLDEST:
+                seqs.sort(Comparator.naturalOrder());
+                break;
+            case FARE_HIGH:
+                seqs.sort(byFare.reversed().thenComparing(newest));
+                break;
+            default:
+                seqs.sort(byFare.thenComparing(newest));
+                break;
+        }
+        return seqs.stream().map(seq -> bookings.get(seq).id).collect(Collectors.toList());
+    }
+
+    private static void assertPagesMatch(BookingIndex index, BookingIndex.Field field, String text,
+                                         BookingIndex.Sort sort, List<String> expected) {
+        for (int pageSize : new int[]{1, 7, 100}) {
+            List<String> seen = new ArrayList<>();
+            for (int offset = 0; offset < expected.size(); offset += pageSize) {
+                BookingIndex.Page page = index.query(field, text, sort, offset, pageSize);
+                assertEquals(expected.size(), page.total, field + " " + text);
+                seen.addAll(page.bookingIds);
+            }
+            assertEquals(expected, seen, field + " '" + text + "' " + sort + " in pages of " + pageSize);
+        }
+    }
+}
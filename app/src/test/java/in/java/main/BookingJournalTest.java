@@ -0,0 +1,221 @@
+package in.java.main;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookingJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysTheLogIntoAnEmptyStore() throws Exception {
+        BookingStore store = recover(writeSampleLog("copy"));
+        assertEquals(2, store.cabs().size());
+        assertEquals(3, store.bookings().size());
+        assertEquals(BookingStatus.COMPLETED, store.findBooking("B1").status);
+        assertEquals(BookingStatus.ASSIGNED, store.findBooking("B2").status);
+        assertEquals(BookingStatus.CANCELLED, store.findBooking("B3").status);
+    }
+
+    @Test
+    void cutsOffATornRecordAtTheEnd() throws Exception {
+        Path log = writeSampleLog("torn");
+        long[] starts = recordStarts(log);
+        // Crash halfway through writing the last record (B3's cancellation)
+        long torn = starts[starts.length - 1] + 5;
+        truncate(log, torn);
+
+        BookingStore store = recover(log);
+        assertEquals(3, store.bookings().size());
+        assertEquals(BookingStatus.ASSIGNED, store.findBooking("B3").status);
+        assertEquals(starts[starts.length - 1], Files.size(log), "torn bytes are removed");
+
+        // The trimmed log takes new records again and replays cleanly
+        assertEquals(3, recover(log).bookings().size());
+    }
+
+    @Test
+    void stopsAtARecordWithABadChecksum() throws Exception {
+        Path log = writeSampleLog("corrupt");
+        long[] starts = recordStarts(log);
+        // Third record is booking B1; flip a byte of its payload
+        byte[] bytes = Files.readAllBytes(log);
+        bytes[(int) starts[2] + 8 + 3] ^= 0x5A;
+        Files.write(log, bytes);
+
+        BookingStore store = recover(log);
+        assertEquals(2, store.cabs().size());
+        assertEquals(0, store.bookings().size(), "nothing after the bad record is trusted");
+        assertEquals(starts[2], Files.size(log));
+    }
+
+    @Test
+    void skipsLogRecordsTheSnapshotAlreadyHolds() throws Exception {
+        Path live = dir.resolve("live");
+        BookingStore store = new BookingStore();
+        EventBus bus = new EventBus(1024);
+        store.addListener(bus);
+        BookingJournal journal = new BookingJournal(live, store, Long.MAX_VALUE);
+        assertFalse(journal.recover());
+        journal.start(bus);
+        populate(store, bus);
+        Path logBeforeSnapshot = Files.copy(live.resolve("journal.log"), dir.resolve("journal.log.before"));
+        bus.shutdown(); // final snapshot, empty log
+
+        assertEquals(0, Files.size(live.resolve("journal.log")));
+        // Put the old log back, as if the crash came between the snapshot and the truncation
+        Files.copy(logBeforeSnapshot, live.resolve("journal.log"), StandardCopyOption.REPLACE_EXISTING);
+
+        BookingStore recovered = recover(live);
+        assertEquals(2, recovered.cabs().size());
+        assertEquals(3, recovered.bookings().size());
+        assertEquals(BookingStatus.COMPLETED, recovered.findBooking("B1").status);
+        assertEquals(BookingStatus.CANCELLED, recovered.findBooking("B3").status);
+    }
+
+    @Test
+    void replaysAStatusThatSkippedOnTrip() throws Exception {
+        // The trip started and ended before the journal wrote the first change,
+        // so both records carry Completed
+        Path live = dir.resolve("live");
+        EventBus bus = new EventBus(1024);
+        BookingJournal journal = new BookingJournal(live, new BookingStore(), Long.MAX_VALUE);
+        journal.recover();
+        journal.start(bus);
+        Booking booking = new Booking("B1", "CAB1", "Alice", "Airport", "Downtown", 250);
+        journal.onEvent(cabAdded(new Cab("CAB1", "Asha", "Airport", "Sedan", 250)), false);
+        journal.onEvent(event(EventBus.Type.BOOKING_CREATED, booking), false);
+        booking.status = BookingStatus.COMPLETED;
+        journal.onEvent(event(EventBus.Type.STATUS_CHANGED, booking), false);
+        journal.onEvent(event(EventBus.Type.STATUS_CHANGED, booking), true);
+        Path log = copyLog(live, "skipped");
+        bus.shutdown();
+
+        assertEquals(BookingStatus.COMPLETED, recover(log).findBooking("B1").status);
+    }
+
+    @Test
+    void reportsAWriteFailureOnce() throws Exception {
+        Path live = dir.resolve("live");
+        BookingStore store = new BookingStore();
+        EventBus bus = new EventBus(1024);
+        store.addListener(bus);
+        BookingJournal journal = new BookingJournal(live, store, 1); // checkpoint after every batch
+        List<IOException> failures = new CopyOnWriteArrayList<>();
+        journal.setFailureListener(failures::add);
+        journal.recover();
+        // A directory where the snapshot's temp file should go makes the checkpoint fail
+        Files.createDirectories(live.resolve("snapshot.dat.tmp").resolve("blocker"));
+        journal.start(bus);
+
+        populate(store, bus);
+        bus.shutdown();
+
+        assertTrue(journal.failed());
+        assertEquals(1, failures.size(), "told once, not once per dropped change");
+    }
+
+    // -------------------- HELPERS --------------------
+    // Drains after every change so each record holds the status the change made
+    private static void populate(BookingStore store, EventBus bus) throws InterruptedException {
+        store.addCab(new Cab("CAB1", "Asha", "Airport", "Sedan", 250));
+        store.addCab(new Cab("CAB2", "Ravi", "Mall", "SUV", 350));
+        awaitDrained(bus);
+        store.addBooking(new Booking("B1", "CAB1", "Alice", "Airport", "Downtown", 250));
+        awaitDrained(bus);
+        store.addBooking(new Booking("B2", "CAB2", "Bob", "Mall", "Airport", 350));
+        awaitDrained(bus);
+        store.addBooking(new Booking("B3", "CAB2", "Cara", "Mall", "Station", 300));
+        awaitDrained(bus);
+        store.transition("B1", BookingStatus.ON_TRIP);
+        awaitDrained(bus);
+        store.transition("B1", BookingStatus.COMPLETED);
+        awaitDrained(bus);
+        store.transition("B3", BookingStatus.CANCELLED);
+        awaitDrained(bus);
+    }
+
+    /** Journals the sample data and returns a copy of the log as a crash would leave it (no final snapshot). */
+    private Path writeSampleLog(String name) throws Exception {
+        Path live = dir.resolve("live-" + name);
+        BookingStore store = new BookingStore();
+        EventBus bus = new EventBus(1024);
+        store.addListener(bus);
+        BookingJournal journal = new BookingJournal(live, store, Long.MAX_VALUE);
+        journal.recover();
+        journal.start(bus);
+        populate(store, bus);
+        assertFalse(Files.exists(live.resolve("snapshot.dat")));
+        Path log = copyLog(live, name);
+        bus.shutdown();
+        return log;
+    }
+
+    private Path copyLog(Path live, String name) throws IOException {
+        Path directory = Files.createDirectories(dir.resolve(name));
+        return Files.copy(live.resolve("journal.log"), directory.resolve("journal.log"));
+    }
+
+    private static EventBus.Event cabAdded(Cab cab) {
+        EventBus.Event event = new EventBus.Event();
+        event.type = EventBus.Type.CAB_ADDED;
+        event.cab = cab;
+        return event;
+    }
+
+    private static EventBus.Event event(EventBus.Type type, Booking booking) {
+        EventBus.Event event = new EventBus.Event();
+        event.type = type;
+        event.booking = booking;
+        event.status = booking.status;
+        return event;
+    }
+
+    private static BookingStore recover(Path logOrDirectory) throws IOException {
+        Path directory = Files.isDirectory(logOrDirectory) ? logOrDirectory : logOrDirectory.getParent();
+        BookingStore store = new BookingStore();
+        assertTrue(new BookingJournal(directory, store, Long.MAX_VALUE).recover());
+        return store;
+    }
+
+    private static void awaitDrained(EventBus bus) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (bus.backlog() > 0) {
+            assertTrue(System.nanoTime() < deadline, "journal didn't catch up");
+            Thread.sleep(1);
+        }
+    }
+
+    // Offsets of each record: length u32 | crc u32 | payload
+    private static long[] recordStarts(Path log) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(log));
+        long[] starts = new long[0];
+        while (bytes.remaining() >= 8) {
+            starts = java.util.Arrays.copyOf(starts, starts.length + 1);
+            starts[starts.length - 1] = bytes.position();
+            int length = bytes.getInt();
+            bytes.position(bytes.position() + 4 + length);
+        }
+        return starts;
+    }
+
+    private static void truncate(Path file, long length) throws IOException {
+        try (java.nio.channels.FileChannel channel = java.nio.channels.FileChannel.open(file,
+                java.nio.file.StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+        }
+    }
+}
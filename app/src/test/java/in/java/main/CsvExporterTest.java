@@ -0,0 +1,71 @@
+package in.java.main;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CsvExporterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void exportReadsBackThroughTheImporter() throws Exception {
+        BookingStore source = new BookingStore();
+        source.addCab(new Cab("CAB1", "Asha", "Airport", "Sedan", 250));
+        Booking quoted = booking("B1", "Dwayne \"The Rock\" Johnson", "Terminal 1, Gate 4", "Downtown");
+        Booking multiline = booking("B2", "Ana\nMaria", "Line one\r\nLine two", "Mall");
+        Booking unicode = booking("B3", "Zoë Ñúñez 🚕", "Bandra–Kurla", "“Quoted” Plaza");
+        Booking plain = booking("B4", "Bob", "Mall", "Airport");
+        plain.createdAt = 0; // written as an empty CreatedAt
+        for (Booking b : new Booking[]{quoted, multiline, unicode, plain}) {
+            source.addBooking(b);
+        }
+        source.transition("B1", BookingStatus.ON_TRIP);
+        source.transition("B1", BookingStatus.COMPLETED);
+        source.transition("B2", BookingStatus.CANCELLED);
+
+        Path file = dir.resolve("bookings.csv");
+        long rows = new CsvExporter(source).export(file, false, (done, total) -> { }, () -> false);
+        assertEquals(4, rows);
+        assertFalse(Files.exists(dir.resolve("bookings.csv.part")));
+
+        BookingStore target = new BookingStore();
+        target.addCab(new Cab("CAB1", "Asha", "Airport", "Sedan", 250));
+        CsvImporter.Result result = new CsvImporter(target)
+                .importFile(file, CsvImporter.Kind.BOOKINGS, (done, total) -> { }, () -> false);
+        assertEquals(4, result.imported);
+        assertEquals(0, result.rejected);
+        assertNull(result.errorReport);
+
+        for (Booking expected : new Booking[]{quoted, multiline, unicode}) {
+            assertSameBooking(expected, target.findBooking(expected.id));
+        }
+        Booking plainCopy = target.findBooking("B4");
+        assertEquals(plain.customer, plainCopy.customer);
+        assertEquals(plain.fare, plainCopy.fare);
+    }
+
+    // -------------------- HELPERS --------------------
+    private static Booking booking(String id, String customer, String from, String to) {
+        Booking b = new Booking(id, "CAB1", customer, from, to, 123.45);
+        b.createdAt = 1_700_000_000_123L;
+        return b;
+    }
+
+    private static void assertSameBooking(Booking expected, Booking actual) {
+        assertEquals(expected.cabId, actual.cabId);
+        assertEquals(expected.customer, actual.customer);
+        assertEquals(expected.from, actual.from);
+        assertEquals(expected.to, actual.to);
+        assertEquals(expected.fare, actual.fare);
+        assertEquals(expected.status, actual.status);
+        assertEquals(expected.createdAt, actual.createdAt);
+    }
+}
@@ -0,0 +1,80 @@
+package in.java.main;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CsvImporterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsQuotedFieldsThatSpanLines() throws IOException {
+        CsvImporter.RecordReader reader = reader("a,\"b,1\",\"say \"\"hi\"\"\"\r\n"
+                + "\"two\nlines\",\"\",x\n"
+                + "last,row");
+
+        assertArrayEquals(new String[]{"a", "b,1", "say \"hi\""}, reader.next());
+        assertEquals(1, reader.recordLine());
+        assertArrayEquals(new String[]{"two\nlines", "", "x"}, reader.next());
+        assertEquals(2, reader.recordLine());
+        // No line break after the final record
+        assertArrayEquals(new String[]{"last", "row"}, reader.next());
+        assertEquals(4, reader.recordLine());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void skipsBlankLinesButCountsThem() throws IOException {
+        CsvImporter.RecordReader reader = reader("\r\n\nfirst\r\n\r\nsecond,\r\n\n");
+
+        assertArrayEquals(new String[]{"first"}, reader.next());
+        assertEquals(3, reader.recordLine());
+        assertArrayEquals(new String[]{"second", ""}, reader.next());
+        assertEquals(5, reader.recordLine());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void reportsBadRowsWithTheirLineAndImportsTheRest() throws IOException {
+        BookingStore store = new BookingStore();
+        store.addCab(new Cab("CAB1", "Asha", "Airport", "Sedan", 250));
+        Path file = dir.resolve("cabs.csv");
+        Files.write(file, List.of(
+                "CabID,Driver,Location,Type,Fare",
+                "CAB2,\"Ravi\nKumar\",Mall,SUV,350",
+                "CAB3,Meera,Station,Sedan,not-a-fare",
+                "CAB1,Asha,Airport,Sedan,250",
+                "CAB4,Dev,Airport,Mini,₹180"), StandardCharsets.UTF_8);
+
+        CsvImporter.Result result = new CsvImporter(store)
+                .importFile(file, CsvImporter.Kind.CABS, (done, total) -> { }, () -> false);
+
+        assertEquals(2, result.imported);
+        assertEquals(2, result.rejected);
+        assertEquals("Ravi\nKumar", store.findCab("CAB2").driver);
+        assertEquals(180, store.findCab("CAB4").fare);
+        assertNotNull(result.errorReport);
+        String report = Files.readString(result.errorReport);
+        // Line numbers count the line break inside CAB2's quoted driver
+        assertTrue(report.contains("4,\"Please enter a valid fare amount!\""), report);
+        assertTrue(report.contains("5,\"Duplicate ID CAB1\""), report);
+    }
+
+    private static CsvImporter.RecordReader reader(String text) {
+        return new CsvImporter.RecordReader(new StringReader(text));
+    }
+}
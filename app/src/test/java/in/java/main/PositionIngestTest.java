@@ -0,0 +1,147 @@
+package in.java.main;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PositionIngestTest {
+
+    private BookingStore store;
+    private PositionIngest ingest;
+    private Cab cab1;
+    private Cab cab2;
+
+    @BeforeEach
+    void setUp() {
+        store = new BookingStore();
+        cab1 = new Cab("CAB1", "Asha", "Airport", "Sedan", 250);
+        cab2 = new Cab("CAB2", "Ravi", "Mall", "SUV", 350);
+        store.addCab(cab1);
+        store.addCab(cab2);
+        ingest = new PositionIngest(store, new DispatchEngine(store));
+        ingest.beginBatch();
+    }
+
+    @Test
+    void movesCabsToTheirFixes() {
+        ingest.decode(packet(new Fix("CAB1", 19_076_090, 72_877_426), new Fix("CAB2", -33_868_820, -151_209_296)));
+
+        assertEquals(2, ingest.applyBatch());
+        assertEquals(19.07609, cab1.lat, 1e-9);
+        assertEquals(72.877426, cab1.lon, 1e-9);
+        assertEquals(-33.86882, cab2.lat, 1e-9);
+        assertEquals(-151.209296, cab2.lon, 1e-9);
+        assertEquals(2, ingest.fixes());
+        assertEquals(0, ingest.droppedFixes());
+    }
+
+    @Test
+    void keepsOnlyTheLatestFixPerCabInABatch() {
+        ingest.decode(packet(new Fix("CAB1", 1_000_000, 2_000_000), new Fix("CAB1", 3_000_000, 4_000_000)));
+        ingest.decode(packet(new Fix("CAB1", 5_000_000, 6_000_000)));
+
+        assertEquals(1, ingest.applyBatch());
+        assertEquals(5.0, cab1.lat, 1e-9);
+        assertEquals(6.0, cab1.lon, 1e-9);
+        assertEquals(3, ingest.fixes());
+        assertEquals(1, ingest.applied());
+
+        // The next batch starts empty
+        ingest.beginBatch();
+        assertEquals(0, ingest.applyBatch());
+    }
+
+    @Test
+    void rejectsAPacketWithABadHeader() {
+        ByteBuffer badMagic = packet(new Fix("CAB1", 1_000_000, 2_000_000));
+        badMagic.put(0, (byte) 'X');
+        ByteBuffer badVersion = packet(new Fix("CAB1", 1_000_000, 2_000_000));
+        badVersion.put(2, (byte) 9);
+        ingest.decode(badMagic);
+        ingest.decode(badVersion);
+        ingest.decode(ByteBuffer.wrap(new byte[]{'C', 'P'}));
+
+        assertEquals(0, ingest.applyBatch());
+        assertEquals(3, ingest.packets());
+        assertEquals(3, ingest.rejectedPackets());
+    }
+
+    @Test
+    void keepsTheRecordsBeforeATruncatedOne() {
+        ByteBuffer full = packet(new Fix("CAB1", 1_000_000, 2_000_000), new Fix("CAB2", 3_000_000, 4_000_000));
+        // Cut the second record off halfway through its longitude
+        full.limit(full.limit() - 2);
+        ingest.decode(full);
+
+        assertEquals(1, ingest.applyBatch());
+        assertEquals(1.0, cab1.lat, 1e-9);
+        assertEquals(1, ingest.fixes());
+        assertEquals(1, ingest.rejectedPackets());
+    }
+
+    @Test
+    void dropsFixesForUnknownCabsAndImpossibleCoordinates() {
+        double lat = cab2.lat, lon = cab2.lon;
+        ingest.decode(packet(
+                new Fix("CAB9", 1_000_000, 2_000_000),
+                new Fix("CAB2", 90_000_001, 0),
+                new Fix("CAB2", 0, -180_000_001),
+                new Fix("CAB2", Integer.MIN_VALUE, 0),
+                new Fix("CAB2", 0, Integer.MIN_VALUE),
+                new Fix("CAB1", -90_000_000, 180_000_000)));
+
+        assertEquals(1, ingest.applyBatch());
+        assertEquals(-90.0, cab1.lat, 1e-9);
+        assertEquals(180.0, cab1.lon, 1e-9);
+        assertEquals(lat, cab2.lat);
+        assertEquals(lon, cab2.lon);
+        assertEquals(6, ingest.fixes());
+        assertEquals(5, ingest.droppedFixes());
+        assertEquals(0, ingest.rejectedPackets());
+    }
+
+    @Test
+    void picksUpCabsAddedLater() {
+        Cab cab3 = new Cab("CAB3", "Meera", "Station", "Sedan", 200);
+        store.addCab(cab3);
+        ingest.decode(packet(new Fix("CAB3", 1_000_000, 2_000_000)));
+        assertEquals(0, ingest.applyBatch(), "not known until the next batch");
+
+        ingest.beginBatch();
+        ingest.decode(packet(new Fix("CAB3", 1_000_000, 2_000_000)));
+        assertEquals(1, ingest.applyBatch());
+        assertEquals(1.0, cab3.lat, 1e-9);
+    }
+
+    // -------------------- HELPERS --------------------
+    private static final class Fix {
+        final String cabId;
+        final int latE6, lonE6;
+
+        Fix(String cabId, int latE6, int lonE6) {
+            this.cabId = cabId;
+            this.latE6 = latE6;
+            this.lonE6 = lonE6;
+        }
+    }
+
+    private static ByteBuffer packet(Fix... fixes) {
+        ByteBuffer packet = ByteBuffer.allocate(PositionIngest.HEADER_BYTES + fixes.length * (1 + 255 + 8));
+        packet.putShort((short) PositionIngest.MAGIC);
+        packet.put((byte) PositionIngest.VERSION);
+        packet.putShort((short) fixes.length);
+        for (Fix fix : fixes) {
+            byte[] id = fix.cabId.getBytes(StandardCharsets.UTF_8);
+            packet.put((byte) id.length);
+            packet.put(id);
+            packet.putInt(fix.latE6);
+            packet.putInt(fix.lonE6);
+        }
+        packet.flip();
+        return packet;
+    }
+}
@@ -0,0 +1,66 @@
+package in.java.main;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Booking a cab. Every call leaves a booking behind, so the store is built
+ * afresh for each iteration: otherwise the rows piling up from earlier
+ * iterations would make each one slower than the last and put their GC
+ * cost into the score.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BookingInsertionBenchmark {
+
+    @Param({"1000", "100000"})
+    int fleetSize;
+
+    @Param({"10000", "1000000"})
+    int historySize;
+
+    private BookingStore store;
+    private String[] cabIds;
+    private int nextCab;
+    private long nextBooking;
+
+    @Setup(Level.Trial)
+    public void setUpCabIds() {
+        cabIds = new String[fleetSize];
+        for (int i = 0; i < fleetSize; i++) {
+            cabIds[i] = Fixtures.cabId(i);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpStore() {
+        store = null; // let the last iteration's store go before building the next
+        store = Fixtures.store(fleetSize, historySize);
+        System.gc();
+    }
+
+    /** Books a free cab, then cancels so the cab stays free for the next call. */
+    @Benchmark
+    public BookingStore.TransitionResult bookingInsertion() {
+        String bookingId = "N" + nextBooking++;
+        nextCab = nextCab + 1 == cabIds.length ? 0 : nextCab + 1;
+        store.bookIfFree(bookingId, cabIds[nextCab], "Bench Customer", "Downtown", "Airport");
+        return store.transition(bookingId, BookingStatus.CANCELLED);
+    }
+}
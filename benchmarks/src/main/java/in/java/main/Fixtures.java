@@ -0,0 +1,50 @@
+package in.java.main;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Builds stores of a given fleet and history size for the benchmarks. */
+final class Fixtures {
+
+    private static final String[] TYPES = {"Sedan", "SUV", "Hatchback"};
+    private static final int CHUNK = 10_000;
+
+    private Fixtures() {
+    }
+
+    static String cabId(int i) {
+        return String.format("CAB%07d", i);
+    }
+
+    /**
+     * A store with {@code fleetSize} cabs spread over the landmarks and
+     * {@code historySize} completed bookings spread over the last 30 days,
+     * so every cab is free.
+     */
+    static BookingStore store(int fleetSize, int historySize) {
+        BookingStore store = new BookingStore();
+        String[] places = Places.landmarks();
+        List<Cab> cabs = new ArrayList<>(fleetSize);
+        for (int i = 0; i < fleetSize; i++) {
+            cabs.add(new Cab(cabId(i), "Driver " + i, places[i % places.length], TYPES[i % TYPES.length],
+                    100 + i % 200));
+        }
+        store.addCabs(cabs);
+
+        long now = System.currentTimeMillis();
+        List<Booking> chunk = new ArrayList<>(CHUNK);
+        for (int i = 0; i < historySize; i++) {
+            Booking b = new Booking("H" + i, cabId(i % fleetSize), "Customer " + i % 50_000,
+                    places[i % places.length], places[(i / places.length + 1) % places.length], 100 + i % 900);
+            b.status = BookingStatus.COMPLETED;
+            b.createdAt = now - (long) i * 2_592_000_000L / Math.max(historySize, 1);
+            chunk.add(b);
+            if (chunk.size() == CHUNK) {
+                store.addBookings(chunk);
+                chunk.clear();
+            }
+        }
+        store.addBookings(chunk);
+        return store;
+    }
+}
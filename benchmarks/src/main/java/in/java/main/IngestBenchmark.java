@@ -0,0 +1,71 @@
+package in.java.main;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding and applying GPS fixes, socket aside: one full datagram of
+ * fixes for random cabs per invocation, scored per fix.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class IngestBenchmark {
+
+    private static final int FIXES_PER_PACKET = 64;
+    private static final int PACKETS = 1024;
+
+    @Param({"10000", "100000"})
+    int fleetSize;
+
+    private PositionIngest ingest;
+    private ByteBuffer[] packets;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BookingStore store = Fixtures.store(fleetSize, 0);
+        ingest = new PositionIngest(store, new DispatchEngine(store));
+        Random random = new Random(42);
+        packets = new ByteBuffer[PACKETS];
+        for (int p = 0; p < PACKETS; p++) {
+            ByteBuffer packet = ByteBuffer.allocateDirect(64 * 1024);
+            PositionIngest.putHeader(packet, FIXES_PER_PACKET);
+            for (int i = 0; i < FIXES_PER_PACKET; i++) {
+                byte[] id = Fixtures.cabId(random.nextInt(fleetSize)).getBytes(StandardCharsets.UTF_8);
+                PositionIngest.putFix(packet, id, 12.85 + random.nextDouble() * 0.3, 77.45 + random.nextDouble() * 0.3);
+            }
+            packet.flip();
+            packets[p] = packet;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FIXES_PER_PACKET)
+    public int decodeAndApply() {
+        ByteBuffer packet = packets[next++ & (PACKETS - 1)];
+        packet.rewind();
+        ingest.beginBatch();
+        ingest.decode(packet);
+        return ingest.applyBatch();
+    }
+}
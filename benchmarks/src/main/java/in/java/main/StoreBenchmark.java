@@ -0,0 +1,85 @@
+package in.java.main;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot paths behind the UI: cab lookup by id, the availability scan the cab
+ * table does on refresh and the dashboard's consistent read of the
+ * aggregates. These only read, so one store serves the whole trial;
+ * booking a cab is in {@link BookingInsertionBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StoreBenchmark {
+
+    @Param({"1000", "100000"})
+    int fleetSize;
+
+    @Param({"10000", "1000000"})
+    int historySize;
+
+    private BookingStore store;
+    private String[] cabIds;
+    private int nextCab;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = Fixtures.store(fleetSize, historySize);
+        cabIds = new String[fleetSize];
+        for (int i = 0; i < fleetSize; i++) {
+            cabIds[i] = Fixtures.cabId(i);
+        }
+    }
+
+    private String nextCabId() {
+        nextCab = nextCab + 1 == cabIds.length ? 0 : nextCab + 1;
+        return cabIds[nextCab];
+    }
+
+    @Benchmark
+    public Cab cabLookupById() {
+        return store.findCab(nextCabId());
+    }
+
+    /** What refreshTables() costs the cab table: one status per cab. */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int availabilityScan() {
+        AvailabilityIndex availability = store.availability();
+        AppendOnlyList<Cab> cabs = store.cabs();
+        int free = 0;
+        for (int i = 0, n = cabs.size(); i < n; i++) {
+            if (availability.isAvailable(cabs.get(i).id)) {
+                free++;
+            }
+        }
+        return free;
+    }
+
+    /** The aggregate read updateDashboard() makes on every refresh. */
+    @Benchmark
+    public DashboardSnapshot dashboardAggregates() {
+        DashboardAggregates aggregates = store.aggregates();
+        AvailabilityIndex availability = store.availability();
+        return store.readConsistent(() -> new DashboardSnapshot(0, aggregates.totalCabs(),
+                aggregates.activeBookings(), availability.availableCount(), aggregates.totalRevenue(),
+                0, 0, null));
+    }
+}